@@ -0,0 +1,60 @@
+package com.iptiq.core;
+
+import ch.qos.logback.classic.Level;
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.ConfigProvider;
+import com.iptiq.config.LoadBalancerConfig;
+import com.iptiq.config.RegistryConfig;
+import com.iptiq.providers.InMemoryProvider;
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.ProviderRegistry;
+import com.iptiq.registry.RegistryOperationException;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load balancer with a fleet of in memory providers, shared by the benchmarks.
+ */
+final class BenchmarkFleet {
+
+    final LoadBalancerImpl loadBalancer;
+
+    final List<Provider> providers = new ArrayList<>();
+
+    BenchmarkFleet(BalancingStrategy strategy, int providerCount, int workersPerProvider) throws RegistryOperationException {
+        // Per request debug logging would dominate the measurements
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        RegistryConfig registryConfig = new RegistryConfig();
+        registryConfig.setMaxAllowedRegisteredProviders(providerCount + 1);
+        // Health checks are kept out of the measurements
+        registryConfig.setHealthCheckFrequencyMillis(3_600_000);
+        registryConfig.setHealthCheckRequestTimeoutMillis(5000);
+
+        LoadBalancerConfig loadBalancerConfig = new LoadBalancerConfig();
+        loadBalancerConfig.setDefaultStrategy(strategy);
+        loadBalancerConfig.setMaxConcurrentWorkersPerProvider(workersPerProvider);
+        loadBalancerConfig.setMaxQueuedRequestsPerProvider(1000);
+
+        ApplicationConfig config = new ApplicationConfig();
+        config.setRegistry(registryConfig);
+        config.setLoadBalancer(loadBalancerConfig);
+        ConfigProvider.setConfig(config);
+
+        loadBalancer = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+        ProviderRegistry registry = loadBalancer.getRegistry();
+        for (int i = 0; i < providerCount; i++) {
+            Provider provider = new InMemoryProvider(registry);
+            registry.registerProvider(provider);
+            providers.add(provider);
+        }
+    }
+
+    void tearDown() {
+        for (Provider provider : providers) {
+            provider.tearDownService();
+        }
+    }
+}
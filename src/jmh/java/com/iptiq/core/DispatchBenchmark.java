@@ -0,0 +1,68 @@
+package com.iptiq.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end request throughput with in memory providers: selection, dispatch to the provider workers and wait for
+ * the response. The batch route is measured per request, to compare with the single request routes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"RANDOM", "ROUND_ROBIN", "LEAST_OUTSTANDING_REQUESTS", "PEAK_EWMA"})
+    public BalancingStrategy strategy;
+
+    private BenchmarkFleet fleet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // Enough workers for all the benchmark threads batches, providers never turn BUSY
+        fleet = new BenchmarkFleet(strategy, 10, 64);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fleet.tearDown();
+    }
+
+    @Benchmark
+    public Object get() throws Exception {
+        return fleet.loadBalancer.get().get();
+    }
+
+    @Benchmark
+    public String getAsync() {
+        return fleet.loadBalancer.getAsync().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<String> getBatch() {
+        return fleet.loadBalancer.getBatch(BATCH_SIZE).join();
+    }
+}
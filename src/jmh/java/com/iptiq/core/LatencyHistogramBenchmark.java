@@ -0,0 +1,46 @@
+package com.iptiq.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a latency, single threaded and with 8 threads sharing the histogram as provider workers do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private long latency() {
+        // 10 us to 10 ms
+        return ThreadLocalRandom.current().nextLong(10_000L, 10_000_000L);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void record1Thread() {
+        histogram.record(latency());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void record8Threads() {
+        histogram.record(latency());
+    }
+}
@@ -0,0 +1,72 @@
+package com.iptiq.core;
+
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.ProviderRegistry;
+import com.iptiq.registry.RegistryOperationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request traffic running while a thread keeps deregistering and registering providers back, measuring both the
+ * requests throughput under churn and the registry update rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class RegistryChurnBenchmark {
+
+    @Param({"ROUND_ROBIN", "CONSISTENT_HASH"})
+    public BalancingStrategy strategy;
+
+    @Param({"10", "1000"})
+    public int providers;
+
+    private BenchmarkFleet fleet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fleet = new BenchmarkFleet(strategy, providers, 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fleet.tearDown();
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(7)
+    public Object traffic() throws Exception {
+        return fleet.loadBalancer.get("key-" + ThreadLocalRandom.current().nextInt(1024)).get();
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public void membership() throws RegistryOperationException {
+        ProviderRegistry registry = fleet.loadBalancer.getRegistry();
+        // Never the first provider, so that the traffic always finds one
+        Provider provider = fleet.providers.get(1 + ThreadLocalRandom.current().nextInt(fleet.providers.size() - 1));
+        registry.deregisterProvider(provider);
+        registry.registerProvider(provider);
+    }
+}
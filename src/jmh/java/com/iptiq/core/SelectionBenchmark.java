@@ -0,0 +1,79 @@
+package com.iptiq.core;
+
+import com.iptiq.providers.Provider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of selecting a provider, per strategy and fleet size, without any dispatch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectionBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"RANDOM", "ROUND_ROBIN", "LEAST_OUTSTANDING_REQUESTS", "P2C", "WEIGHTED_ROUND_ROBIN", "PEAK_EWMA", "CONSISTENT_HASH"})
+    public BalancingStrategy strategy;
+
+    @Param({"10", "1000", "10000"})
+    public int providers;
+
+    private BenchmarkFleet fleet;
+
+    private final String[] keys = new String[KEYS];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fleet = new BenchmarkFleet(strategy, providers, 1);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fleet.tearDown();
+    }
+
+    private Provider select() throws ServiceUnavailableException {
+        return fleet.loadBalancer.selectNextAvailableProvider(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Provider select1Thread() throws ServiceUnavailableException {
+        return select();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Provider select8Threads() throws ServiceUnavailableException {
+        return select();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Provider select64Threads() throws ServiceUnavailableException {
+        return select();
+    }
+}
@@ -1,10 +1,18 @@
 package com.iptiq;
 
+import com.iptiq.config.ApplicationConfig;
 import com.iptiq.config.ConfigProvider;
 import com.iptiq.core.BalancingStrategy;
+import com.iptiq.core.HistogramSnapshot;
 import com.iptiq.core.LoadBalancer;
 import com.iptiq.core.LoadBalancerBuilder;
+import com.iptiq.core.MetricsSnapshot;
+import com.iptiq.core.ProviderMetricsSnapshot;
 import com.iptiq.core.ServiceUnavailableException;
+import com.iptiq.loadtest.LoadGenerator;
+import com.iptiq.loadtest.LoadProfile;
+import com.iptiq.loadtest.LoadReport;
+import com.iptiq.metrics.PrometheusExporter;
 import com.iptiq.providers.InMemoryProvider;
 import com.iptiq.providers.Provider;
 import com.iptiq.registry.ProviderRegistry;
@@ -12,10 +20,13 @@ import com.iptiq.registry.RegistryOperationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class Application {
     static Logger logger = LoggerFactory.getLogger(Application.class);
@@ -25,6 +36,22 @@ public class Application {
         LoadBalancer lb = new LoadBalancerBuilder().build();
         ProviderRegistry registry = lb.getRegistry();
 
+        // --------> Configuration reloaded on changes, when given with -Dconfig.file=<path>
+        try {
+            ConfigProvider.watch();
+        } catch (IOException e) {
+            logger.error("Unable to watch configuration: " + e.toString());
+        }
+
+        // --------> Prometheus endpoint, when enabled in the configuration
+        if (ConfigProvider.getConfig().getMetrics().isEnabled()) {
+            try {
+                new PrometheusExporter(lb, ConfigProvider.getConfig().getMetrics()).start();
+            } catch (IOException e) {
+                logger.error("Unable to serve metrics: " + e.toString());
+            }
+        }
+
         // --------> STEP #2 - Register 10 balancers
         for (int i = 0; i < 10; i++) {
             Provider provider = new InMemoryProvider(registry);
@@ -46,6 +73,20 @@ public class Application {
         callAndPrintStats(lb);
 
 
+        // --------> Non blocking calls, completed by the provider workers
+        lb.clearMetrics();
+        List<CompletableFuture<String>> asyncCalls = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            asyncCalls.add(lb.getAsync().orTimeout(1, TimeUnit.SECONDS));
+        }
+        CompletableFuture.allOf(asyncCalls.toArray(new CompletableFuture[0]))
+                .exceptionally(e -> {
+                    logger.warn("Unable to process request: " + e.toString());
+                    return null;
+                }).join();
+        printMetrics(lb);
+
+
         // --------> STEP #5 - Include / Exclude provider to the registry
         List<Provider> availableProviders = registry.getAvailableServices();
         Provider p1 = availableProviders.get(0);
@@ -69,16 +110,19 @@ public class Application {
         callAndPrintStats(lb);
 
         // Tear down services
-        for (int i = 0; i < registry.getAvailableServices().size(); i++) {
-            registry.getAvailableServices().get(i).tearDownService();
+        for (Provider provider : registry.getAvailableServices()) {
+            provider.tearDownService();
         }
 
         // --------> STEP #7  - Health checks and circuit breaker
         // Checked at src/test/java/com/iptiq/registry/InMemoryProviderRegistryTest.java
 
         // --------> STEP #8  - Max capacity
+        // 2 workers per provider, published as a new configuration object: the one in use is never modified
+        ApplicationConfig maxCapacityConfig = ConfigProvider.copyConfig();
+        maxCapacityConfig.getLoadBalancer().setMaxConcurrentWorkersPerProvider(2);
+        ConfigProvider.setConfig(maxCapacityConfig);
         lb = new LoadBalancerBuilder().build();
-        ConfigProvider.getConfig().getLoadBalancer().setMaxConcurrentWorkersPerProvider(2);
         registry = lb.getRegistry();
 
         p1 = new InMemoryProvider(registry);
@@ -123,20 +167,21 @@ public class Application {
         }
 
         // Tear down services
-        for (int i = 0; i < registry.getAvailableServices().size(); i++) {
-            registry.getAvailableServices().get(i).tearDownService();
+        for (Provider provider : registry.getAvailableServices()) {
+            provider.tearDownService();
         }
 
         System.exit(0);
     }
 
     private static void callAndPrintStats(LoadBalancer lb) {
+        // Open-loop load, see com.iptiq.loadtest.LoadTest for a full load test over simulated providers
         try {
-            for (int i = 0; i < 100; i++) {
-                handleSynchronousGet(lb);
-            }
-        } catch (Exception e) {
-            logger.warn("Unable to process request: " + e.toString());
+            LoadReport report = new LoadGenerator(lb).run(new LoadProfile().setRequestsPerSecond(200).setDurationMillis(500));
+            logger.info("Load report: " + report);
+        } catch (InterruptedException e) {
+            logger.warn("Load run interrupted: " + e.toString());
+            Thread.currentThread().interrupt();
         }
 
         logger.info("Load Balancer Metrics - request distribution -->");
@@ -145,13 +190,19 @@ public class Application {
     }
 
     private static void printMetrics(LoadBalancer lb1) {
-        Map<String, Integer> metrics = lb1.getMetrics();
-        int totalCalls = 0;
-        for (Map.Entry<String, Integer> entry : metrics.entrySet()) {
-            totalCalls += entry.getValue();
-            logger.info("# of requests for: " + entry.getKey() + " -- " + entry.getValue());
+        MetricsSnapshot metrics = lb1.getMetrics();
+        for (ProviderMetricsSnapshot entry : metrics.getProviders().values()) {
+            logger.info("# of requests for: " + entry.getProviderUuid() + " -- " + entry.getDispatched()
+                    + " (succeeded: " + entry.getSucceeded() + ", failed: " + entry.getFailed()
+                    + ", rejected: " + entry.getRejected() + ", " + percentiles(entry.getLatency()) + ")");
         }
-        logger.info("total calls: " + totalCalls);
+        logger.info("total calls: " + metrics.getTotalDispatched() + ", unavailable: " + metrics.getUnavailable()
+                + ", " + percentiles(metrics.getLatency()));
+    }
+
+    private static String percentiles(HistogramSnapshot latency) {
+        return "p50: " + TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(50)) + "us, p99: "
+                + TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(99)) + "us";
     }
 
     /*
@@ -6,6 +6,8 @@ public class ApplicationConfig {
 
     private LoadBalancerConfig loadBalancer;
 
+    private MetricsConfig metrics = new MetricsConfig();
+
     public RegistryConfig getRegistry() {
         return registry;
     }
@@ -21,4 +23,12 @@ public class ApplicationConfig {
     public void setLoadBalancer(LoadBalancerConfig loadBalancer) {
         this.loadBalancer = loadBalancer;
     }
+
+    public MetricsConfig getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsConfig metrics) {
+        this.metrics = metrics;
+    }
 }
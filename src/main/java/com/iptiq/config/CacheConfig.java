@@ -0,0 +1,40 @@
+package com.iptiq.config;
+
+/**
+ * Read-through cache of the keyed responses. Default values are used for any setting missing from the configuration
+ * file.
+ */
+public class CacheConfig {
+
+    private boolean enabled = false;
+
+    // Time a response is served from the cache after it was fetched
+    private int ttlMillis = 1000;
+
+    // Maximum number of cached responses
+    private int maxEntries = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(int ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+}
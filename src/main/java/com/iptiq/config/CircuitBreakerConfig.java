@@ -0,0 +1,74 @@
+package com.iptiq.config;
+
+/**
+ * Circuit breaker tuning, applied on the outcome of the requests served by each provider.
+ * Default values are used for any setting missing from the configuration file.
+ */
+public class CircuitBreakerConfig {
+
+    // Number of most recent requests the rates are computed on
+    private int slidingWindowSize = 100;
+
+    // Minimum number of recorded requests before rates are evaluated
+    private int minimumNumberOfCalls = 20;
+
+    // Percentage of failed requests opening the circuit
+    private int failureRateThreshold = 50;
+
+    // Percentage of slow requests opening the circuit
+    private int slowCallRateThreshold = 80;
+
+    // Duration above which a request is considered slow
+    private int slowCallDurationMillis = 2000;
+
+    // Number of trial requests let through while half open
+    private int permittedCallsInHalfOpenState = 5;
+
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public void setSlidingWindowSize(int slidingWindowSize) {
+        this.slidingWindowSize = slidingWindowSize;
+    }
+
+    public int getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    public void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+    }
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public int getSlowCallDurationMillis() {
+        return slowCallDurationMillis;
+    }
+
+    public void setSlowCallDurationMillis(int slowCallDurationMillis) {
+        this.slowCallDurationMillis = slowCallDurationMillis;
+    }
+
+    public int getPermittedCallsInHalfOpenState() {
+        return permittedCallsInHalfOpenState;
+    }
+
+    public void setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    }
+}
@@ -0,0 +1,10 @@
+package com.iptiq.config;
+
+/**
+ * Notified when a new configuration is published, to apply the changed values to a running component.
+ * Listeners are weakly referenced by the ConfigProvider: components register themselves and are not kept alive by it.
+ */
+public interface ConfigChangeListener {
+
+    void configChanged(ApplicationConfig previous, ApplicationConfig current);
+}
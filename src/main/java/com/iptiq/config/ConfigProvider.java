@@ -5,28 +5,58 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * com.iptiq.Application configuration loader.
  * In normal times a framework IOC approach would be used (spring boot or other..).
  * Here, for the sake of using no external framework, let's define our config singleton and load config from the yaml file
- * application_config.yaml.
+ * application_config.yaml, found on the classpath or at the path given by the config.file system property.
+ * <p>
+ * The configuration can be reloaded at runtime: a new configuration object is parsed and published with a single
+ * volatile write, the one in use is never modified, so readers always see a consistent configuration. Components
+ * registered as ConfigChangeListener are then notified to apply the changes. A configuration is validated before being
+ * published: an invalid one is rejected and the configuration in use is kept.
  */
 public class ConfigProvider {
 
     static Logger logger = LoggerFactory.getLogger(ConfigProvider.class);
 
-    private ApplicationConfig config;
+    // System property giving the path of an external configuration file, which is then watched for changes
+    public static final String CONFIG_FILE_PROPERTY = "config.file";
+
+    private static final String CONFIG_RESOURCE = "application_config.yaml";
+
+    private final ObjectMapper mapper;
+
+    // External configuration file, null when loaded from the classpath
+    private final Path configFile;
+
+    private volatile ApplicationConfig config;
+
+    private final Set<ConfigChangeListener> listeners = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private ConfigWatcher watcher;
 
     private ConfigProvider() {
-        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        mapper = new ObjectMapper(new YAMLFactory());
         mapper.findAndRegisterModules();
-
+        String path = System.getProperty(CONFIG_FILE_PROPERTY);
+        configFile = path == null ? null : Paths.get(path).toAbsolutePath();
         try {
-            config = mapper.readValue(new File("src/main/resources/application_config.yaml"), ApplicationConfig.class);
-        } catch (IOException e) {
+            ApplicationConfig loaded = load();
+            validate(loaded);
+            config = loaded;
+        } catch (IOException | IllegalArgumentException e) {
             logger.error(String.format("error while loading config : %s", e.toString()));
         }
     }
@@ -39,4 +69,161 @@ public class ConfigProvider {
         return ApplicationConfigHelper.INSTANCE.config;
     }
 
-}
\ No newline at end of file
+    /**
+     * Publish a new configuration and notify the listeners. The given configuration must not be modified afterwards.
+     *
+     * @throws IllegalArgumentException if the configuration is invalid, the current one being kept
+     */
+    public static void setConfig(ApplicationConfig config) {
+        validate(config);
+        ApplicationConfigHelper.INSTANCE.publish(config);
+    }
+
+    /**
+     * Deep copy of the configuration in use, to change some of its values and publish it with setConfig(), the other
+     * values being kept.
+     */
+    public static ApplicationConfig copyConfig() {
+        ConfigProvider provider = ApplicationConfigHelper.INSTANCE;
+        return provider.mapper.convertValue(provider.config, ApplicationConfig.class);
+    }
+
+    /**
+     * Load the configuration again from its source and publish it. The current configuration is kept if the new one
+     * cannot be read or is invalid.
+     */
+    public static boolean reload() {
+        ConfigProvider provider = ApplicationConfigHelper.INSTANCE;
+        try {
+            ApplicationConfig next = provider.load();
+            validate(next);
+            provider.publish(next);
+            logger.info("configuration reloaded");
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error(String.format("error while reloading config, keeping the current one : %s", e.toString()));
+            return false;
+        }
+    }
+
+    /**
+     * Watch the external configuration file, if any, and reload the configuration whenever it changes.
+     */
+    public static synchronized void watch() throws IOException {
+        ConfigProvider provider = ApplicationConfigHelper.INSTANCE;
+        if (provider.configFile == null) {
+            logger.info("configuration loaded from the classpath, not watched for changes");
+            return;
+        }
+        if (provider.watcher == null) {
+            provider.watcher = new ConfigWatcher(provider.configFile, ConfigProvider::reload);
+            provider.watcher.start();
+        }
+    }
+
+    public static void addChangeListener(ConfigChangeListener listener) {
+        ConfigProvider provider = ApplicationConfigHelper.INSTANCE;
+        synchronized (provider.listeners) {
+            provider.listeners.add(listener);
+        }
+    }
+
+    public static void removeChangeListener(ConfigChangeListener listener) {
+        ConfigProvider provider = ApplicationConfigHelper.INSTANCE;
+        synchronized (provider.listeners) {
+            provider.listeners.remove(listener);
+        }
+    }
+
+    private ApplicationConfig load() throws IOException {
+        if (configFile != null) {
+            try (InputStream in = Files.newInputStream(configFile)) {
+                return mapper.readValue(in, ApplicationConfig.class);
+            }
+        }
+        try (InputStream in = ConfigProvider.class.getClassLoader().getResourceAsStream(CONFIG_RESOURCE)) {
+            if (in == null) {
+                throw new IOException(CONFIG_RESOURCE + " not found on the classpath");
+            }
+            return mapper.readValue(in, ApplicationConfig.class);
+        }
+    }
+
+    // Reject the settings the components cannot run with, e.g. a 0 health check frequency making the checks spin
+    static void validate(ApplicationConfig config) {
+        requirePresent("configuration", config);
+        RegistryConfig registry = requirePresent("registry", config.getRegistry());
+        requireAtLeast("registry.maxAllowedRegisteredProviders", registry.getMaxAllowedRegisteredProviders(), 1);
+        requireAtLeast("registry.healthCheckFrequencyMillis", registry.getHealthCheckFrequencyMillis(), 1);
+        requireAtLeast("registry.healthCheckRequestTimeoutMillis", registry.getHealthCheckRequestTimeoutMillis(), 1);
+        // 0 stands for a single thread
+        requireAtLeast("registry.healthCheckThreads", registry.getHealthCheckThreads(), 0);
+        CircuitBreakerConfig circuitBreaker = requirePresent("registry.circuitBreaker", registry.getCircuitBreaker());
+        requireAtLeast("registry.circuitBreaker.slidingWindowSize", circuitBreaker.getSlidingWindowSize(), 1);
+        requireAtLeast("registry.circuitBreaker.minimumNumberOfCalls", circuitBreaker.getMinimumNumberOfCalls(), 1);
+        requireBetween("registry.circuitBreaker.failureRateThreshold", circuitBreaker.getFailureRateThreshold(), 1, 100);
+        requireBetween("registry.circuitBreaker.slowCallRateThreshold", circuitBreaker.getSlowCallRateThreshold(), 1, 100);
+        requireAtLeast("registry.circuitBreaker.slowCallDurationMillis", circuitBreaker.getSlowCallDurationMillis(), 1);
+        requireAtLeast("registry.circuitBreaker.permittedCallsInHalfOpenState",
+                circuitBreaker.getPermittedCallsInHalfOpenState(), 1);
+
+        LoadBalancerConfig loadBalancer = requirePresent("loadBalancer", config.getLoadBalancer());
+        requirePresent("loadBalancer.defaultStrategy", loadBalancer.getDefaultStrategy());
+        requireAtLeast("loadBalancer.maxConcurrentWorkersPerProvider", loadBalancer.getMaxConcurrentWorkersPerProvider(), 1);
+        requireAtLeast("loadBalancer.maxQueuedRequestsPerProvider", loadBalancer.getMaxQueuedRequestsPerProvider(), 0);
+        requireBetween("loadBalancer.busyLowWatermarkPercent", loadBalancer.getBusyLowWatermarkPercent(), 0, 100);
+        requirePresent("loadBalancer.executionMode", loadBalancer.getExecutionMode());
+        HedgingConfig hedging = requirePresent("loadBalancer.hedging", loadBalancer.getHedging());
+        requireAtLeast("loadBalancer.hedging.delayMillis", hedging.getDelayMillis(), 1);
+        requireAtLeast("loadBalancer.hedging.budgetPercent", hedging.getBudgetPercent(), 0);
+        RetryConfig retry = requirePresent("loadBalancer.retry", loadBalancer.getRetry());
+        requireAtLeast("loadBalancer.retry.maxAttempts", retry.getMaxAttempts(), 1);
+        requireAtLeast("loadBalancer.retry.budgetPercent", retry.getBudgetPercent(), 0);
+        CacheConfig cache = requirePresent("loadBalancer.cache", loadBalancer.getCache());
+        requireAtLeast("loadBalancer.cache.ttlMillis", cache.getTtlMillis(), 1);
+        requireAtLeast("loadBalancer.cache.maxEntries", cache.getMaxEntries(), 1);
+
+        MetricsConfig metrics = requirePresent("metrics", config.getMetrics());
+        // 0 stands for any free port
+        requireBetween("metrics.port", metrics.getPort(), 0, 65535);
+        requireAtLeast("metrics.refreshMillis", metrics.getRefreshMillis(), 1);
+    }
+
+    private static <T> T requirePresent(String name, T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("invalid configuration, " + name + " is missing");
+        }
+        return value;
+    }
+
+    private static void requireAtLeast(String name, int value, int min) {
+        if (value < min) {
+            throw new IllegalArgumentException("invalid configuration, " + name + " must be at least " + min + ": " + value);
+        }
+    }
+
+    private static void requireBetween(String name, int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException("invalid configuration, " + name + " must be between " + min + " and "
+                    + max + ": " + value);
+        }
+    }
+
+    private void publish(ApplicationConfig next) {
+        ApplicationConfig previous;
+        List<ConfigChangeListener> notified;
+        // Serialize publications, so that listeners see the changes in order
+        synchronized (listeners) {
+            previous = config;
+            config = next;
+            notified = new ArrayList<>(listeners);
+            for (ConfigChangeListener listener : notified) {
+                try {
+                    listener.configChanged(previous, next);
+                } catch (RuntimeException e) {
+                    logger.error("unable to apply configuration change: " + e.toString());
+                }
+            }
+        }
+    }
+}
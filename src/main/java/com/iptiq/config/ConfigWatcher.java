@@ -0,0 +1,85 @@
+package com.iptiq.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a configuration file and runs the given action when it is created or modified.
+ * The parent directory is watched, so that editors replacing the file (rename over it) are noticed too. Events are
+ * debounced: an editor saving a file often triggers several of them, the action runs once they have settled.
+ */
+class ConfigWatcher implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    // Quiet period after the last event before running the action
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private final Path file;
+
+    private final Runnable onChange;
+
+    private final WatchService watchService;
+
+    ConfigWatcher(Path file, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    void start() {
+        Thread thread = new Thread(this::watch, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("watching configuration file " + file);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                // Drain the events following shortly, a single action for the whole burst
+                while (key != null) {
+                    changed |= concernsFile(key);
+                    key.reset();
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed, stop watching
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean concerned = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() != StandardWatchEventKinds.OVERFLOW && file.getFileName().equals(event.context())) {
+                concerned = true;
+            }
+        }
+        return concerned;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
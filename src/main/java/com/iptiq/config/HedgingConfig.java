@@ -0,0 +1,40 @@
+package com.iptiq.config;
+
+/**
+ * Request hedging: when a request is still pending after a delay, a duplicate is sent to another provider and the
+ * first response wins. Default values are used for any setting missing from the configuration file.
+ */
+public class HedgingConfig {
+
+    private boolean enabled = false;
+
+    // Delay after which a pending request is duplicated
+    private int delayMillis = 50;
+
+    // Maximum extra load hedging may add, as a percentage of the requests
+    private int budgetPercent = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getDelayMillis() {
+        return delayMillis;
+    }
+
+    public void setDelayMillis(int delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    public void setBudgetPercent(int budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+}
@@ -1,6 +1,7 @@
 package com.iptiq.config;
 
 import com.iptiq.core.BalancingStrategy;
+import com.iptiq.providers.ExecutionMode;
 
 public class LoadBalancerConfig {
 
@@ -8,6 +9,21 @@ public class LoadBalancerConfig {
 
     private int maxConcurrentWorkersPerProvider;
 
+    private int maxQueuedRequestsPerProvider = 100;
+
+    private int busyLowWatermarkPercent = 75;
+
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREADS;
+
+    private HedgingConfig hedging = new HedgingConfig();
+
+    private RetryConfig retry = new RetryConfig();
+
+    // Let concurrent requests for the same key share a single provider call
+    private boolean coalesceKeyedRequests = false;
+
+    private CacheConfig cache = new CacheConfig();
+
     public BalancingStrategy getDefaultStrategy() {
         return defaultStrategy;
     }
@@ -23,4 +39,60 @@ public class LoadBalancerConfig {
     public void setMaxConcurrentWorkersPerProvider(int maxConcurrentWorkersPerProvider) {
         this.maxConcurrentWorkersPerProvider = maxConcurrentWorkersPerProvider;
     }
+
+    public int getMaxQueuedRequestsPerProvider() {
+        return maxQueuedRequestsPerProvider;
+    }
+
+    public void setMaxQueuedRequestsPerProvider(int maxQueuedRequestsPerProvider) {
+        this.maxQueuedRequestsPerProvider = maxQueuedRequestsPerProvider;
+    }
+
+    public int getBusyLowWatermarkPercent() {
+        return busyLowWatermarkPercent;
+    }
+
+    public void setBusyLowWatermarkPercent(int busyLowWatermarkPercent) {
+        this.busyLowWatermarkPercent = busyLowWatermarkPercent;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public HedgingConfig getHedging() {
+        return hedging;
+    }
+
+    public void setHedging(HedgingConfig hedging) {
+        this.hedging = hedging;
+    }
+
+    public RetryConfig getRetry() {
+        return retry;
+    }
+
+    public void setRetry(RetryConfig retry) {
+        this.retry = retry;
+    }
+
+    public boolean isCoalesceKeyedRequests() {
+        return coalesceKeyedRequests;
+    }
+
+    public void setCoalesceKeyedRequests(boolean coalesceKeyedRequests) {
+        this.coalesceKeyedRequests = coalesceKeyedRequests;
+    }
+
+    public CacheConfig getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheConfig cache) {
+        this.cache = cache;
+    }
 }
@@ -0,0 +1,38 @@
+package com.iptiq.config;
+
+/**
+ * Prometheus metrics endpoint. Default values are used for any setting missing from the configuration file.
+ */
+public class MetricsConfig {
+
+    private boolean enabled = false;
+
+    private int port = 9400;
+
+    // Metrics are rendered in the background at this period, scrapes serve the latest rendering
+    private int refreshMillis = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getRefreshMillis() {
+        return refreshMillis;
+    }
+
+    public void setRefreshMillis(int refreshMillis) {
+        this.refreshMillis = refreshMillis;
+    }
+}
@@ -8,6 +8,10 @@ public class RegistryConfig {
 
     private int healthCheckRequestTimeoutMillis;
 
+    private int healthCheckThreads;
+
+    private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+
     public int getMaxAllowedRegisteredProviders() {
         return maxAllowedRegisteredProviders;
     }
@@ -31,4 +35,20 @@ public class RegistryConfig {
     public void setHealthCheckRequestTimeoutMillis(int healthCheckRequestTimeoutMillis) {
         this.healthCheckRequestTimeoutMillis = healthCheckRequestTimeoutMillis;
     }
+
+    public int getHealthCheckThreads() {
+        return healthCheckThreads;
+    }
+
+    public void setHealthCheckThreads(int healthCheckThreads) {
+        this.healthCheckThreads = healthCheckThreads;
+    }
+
+    public CircuitBreakerConfig getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreakerConfig circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
 }
@@ -0,0 +1,40 @@
+package com.iptiq.config;
+
+/**
+ * Automatic retry of failed or rejected requests on another provider. Default values are used for any setting
+ * missing from the configuration file.
+ */
+public class RetryConfig {
+
+    private boolean enabled = false;
+
+    // Maximum number of providers a request is sent to, first attempt included
+    private int maxAttempts = 3;
+
+    // Maximum extra load retries may add, as a percentage of the requests
+    private int budgetPercent = 10;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    public void setBudgetPercent(int budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+}
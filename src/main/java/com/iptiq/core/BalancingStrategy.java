@@ -2,7 +2,12 @@ package com.iptiq.core;
 
 public enum BalancingStrategy {
     RANDOM("RANDOM"),
-    ROUND_ROBIN("ROUND_ROBIN");
+    ROUND_ROBIN("ROUND_ROBIN"),
+    LEAST_OUTSTANDING_REQUESTS("LEAST_OUTSTANDING_REQUESTS"),
+    P2C("P2C"),
+    WEIGHTED_ROUND_ROBIN("WEIGHTED_ROUND_ROBIN"),
+    PEAK_EWMA("PEAK_EWMA"),
+    CONSISTENT_HASH("CONSISTENT_HASH");
 
     private String value;
 
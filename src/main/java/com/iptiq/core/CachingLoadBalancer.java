@@ -0,0 +1,56 @@
+package com.iptiq.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Read-through cache layer in front of a load balancer: keyed requests are served from the response cache when
+ * possible, and the responses fetched from the providers are cached on the way back.
+ * Requests without key, and batches, are passed through as is.
+ */
+class CachingLoadBalancer extends ForwardingLoadBalancer {
+
+    private final ResponseCache cache;
+
+    CachingLoadBalancer(LoadBalancer delegate, ResponseCache cache) {
+        super(delegate);
+        this.cache = cache;
+    }
+
+    @Override
+    public Future get(String key) throws ServiceUnavailableException {
+        if (key == null) {
+            return delegate.get();
+        }
+        return synchronousResult(getAsync(key));
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String key) {
+        if (key == null) {
+            return delegate.getAsync();
+        }
+        String cached = cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<String> result = delegate.getAsync(key);
+        result.whenComplete((value, failure) -> {
+            if (failure == null && value != null) {
+                cache.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public MetricsSnapshot getMetrics() {
+        return delegate.getMetrics().withCache(cache.getHits(), cache.getMisses(), cache.getEvictions());
+    }
+
+    @Override
+    public void clearMetrics() {
+        delegate.clearMetrics();
+        cache.resetCounters();
+    }
+}
@@ -0,0 +1,80 @@
+package com.iptiq.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight layer in front of a load balancer: concurrent keyed requests for the same key share one in-flight
+ * provider call and its result, instead of each becoming a separate invocation. The pending call is forgotten as soon
+ * as it completes, so a request arriving afterwards always triggers a fresh call.
+ * Requests without key, and batches, are passed through as is.
+ */
+class CoalescingLoadBalancer extends ForwardingLoadBalancer {
+
+    // In-flight call per key
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    // Requests served by an already in-flight call
+    private final LongAdder coalescedCount = new LongAdder();
+
+    CoalescingLoadBalancer(LoadBalancer delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public Future get(String key) throws ServiceUnavailableException {
+        if (key == null) {
+            return delegate.get();
+        }
+        return synchronousResult(getAsync(key));
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String key) {
+        if (key == null) {
+            return delegate.getAsync();
+        }
+        CompletableFuture<String> shared = inFlight.get(key);
+        if (shared == null) {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            shared = inFlight.putIfAbsent(key, call);
+            if (shared == null) {
+                CompletableFuture<String> result;
+                try {
+                    result = delegate.getAsync(key);
+                } catch (RuntimeException e) {
+                    // The call was never started, do not leave the callers who joined it meanwhile waiting forever
+                    inFlight.remove(key, call);
+                    call.completeExceptionally(e);
+                    return call.copy();
+                }
+                result.whenComplete((value, failure) -> {
+                    // Forget the call before publishing its result, late callers start a fresh one
+                    inFlight.remove(key, call);
+                    if (failure != null) {
+                        call.completeExceptionally(failure);
+                    } else {
+                        call.complete(value);
+                    }
+                });
+                return call.copy();
+            }
+        }
+        coalescedCount.increment();
+        // Each caller gets its own copy, so that cancelling it or timing out does not affect the other callers
+        return shared.copy();
+    }
+
+    @Override
+    public MetricsSnapshot getMetrics() {
+        return delegate.getMetrics().withCoalesced(coalescedCount.sum());
+    }
+
+    @Override
+    public void clearMetrics() {
+        delegate.clearMetrics();
+        coalescedCount.reset();
+    }
+}
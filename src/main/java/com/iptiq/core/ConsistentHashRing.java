@@ -0,0 +1,152 @@
+package com.iptiq.core;
+
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.ProviderSnapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Consistent hashing ring with virtual nodes, kept in sync with the registry snapshots.
+ * Lookups are lock free and O(log n). When the available providers change, only the virtual nodes of the providers
+ * joining or leaving are added or removed, so only the keys owned by those providers move.
+ */
+class ConsistentHashRing {
+
+    // Virtual nodes per provider, smoothing the keys distribution across providers
+    static final int VIRTUAL_NODES_PER_PROVIDER = 100;
+
+    private final ConcurrentSkipListMap<Long, Provider> ring = new ConcurrentSkipListMap<>();
+
+    // Providers currently placed on the ring and the snapshot version they reflect
+    private final Set<Provider> members = new HashSet<>();
+
+    private volatile long version = -1;
+
+    Provider select(ProviderSnapshot providers, String key) {
+        if (providers.getVersion() != version) {
+            update(providers);
+        }
+        // Walk the ring clockwise from the key position, up to the first available provider. Keys of a BUSY provider
+        // spill over its successors only while it is busy.
+        long position = hash(key);
+        for (Provider candidate : ring.tailMap(position).values()) {
+            if (candidate.isAvailable()) {
+                return candidate;
+            }
+        }
+        // wrap around the ring
+        for (Provider candidate : ring.headMap(position).values()) {
+            if (candidate.isAvailable()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void update(ProviderSnapshot providers) {
+        // A caller holding an older snapshot must not take the ring back to a stale membership
+        if (providers.getVersion() <= version) {
+            return;
+        }
+        Set<Provider> available = new HashSet<>();
+        for (int i = 0; i < providers.size(); i++) {
+            available.add(providers.get(i));
+        }
+        for (Provider member : members) {
+            if (!available.contains(member)) {
+                for (int v = 0; v < VIRTUAL_NODES_PER_PROVIDER; v++) {
+                    ring.remove(virtualNodeHash(member, v), member);
+                }
+            }
+        }
+        for (Provider provider : available) {
+            if (!members.contains(provider)) {
+                for (int v = 0; v < VIRTUAL_NODES_PER_PROVIDER; v++) {
+                    ring.putIfAbsent(virtualNodeHash(provider, v), provider);
+                }
+            }
+        }
+        members.clear();
+        members.addAll(available);
+        version = providers.getVersion();
+    }
+
+    private static long virtualNodeHash(Provider provider, int virtualNode) {
+        return mix(provider.getUuid().getMostSignificantBits()
+                ^ mix(provider.getUuid().getLeastSignificantBits() + virtualNode));
+    }
+
+    // First half of the 128 bits MurmurHash3 (x64 variant, seed 0) of the key UTF-8 bytes
+    static long hash(String key) {
+        byte[] data = key.getBytes(StandardCharsets.UTF_8);
+        int blocks = data.length / 16;
+        long h1 = 0;
+        long h2 = 0;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLongLittleEndian(data, i * 16);
+            long k2 = getLongLittleEndian(data, i * 16 + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        // Tail, the remaining 0 to 15 bytes
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        for (int i = data.length - tail - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (data[tail + i] & 0xffL);
+        }
+        for (int i = Math.min(data.length - tail, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (data[tail + i] & 0xffL);
+        }
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = mix(h1);
+        h2 = mix(h2);
+        h1 += h2;
+        return h1;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= 0x87c37b91114253d5L;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * 0x4cf5ad432745937fL;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= 0x4cf5ad432745937fL;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * 0x87c37b91114253d5L;
+    }
+
+    private static long getLongLittleEndian(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+    // 64 bits finalizer of MurmurHash3, spreads close inputs over the whole ring
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,90 @@
+package com.iptiq.core;
+
+import com.iptiq.registry.ProviderRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+
+/**
+ * Base of the optional layers wrapped around the load balancer, forwarding every call to the wrapped instance.
+ * Layers override the keyed routes they act on.
+ */
+abstract class ForwardingLoadBalancer implements LoadBalancer {
+
+    protected final LoadBalancer delegate;
+
+    ForwardingLoadBalancer(LoadBalancer delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Future get() throws ServiceUnavailableException {
+        return delegate.get();
+    }
+
+    @Override
+    public Future get(String key) throws ServiceUnavailableException {
+        return delegate.get(key);
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync() {
+        return delegate.getAsync();
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String key) {
+        return delegate.getAsync(key);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getBatch(int n) {
+        return delegate.getBatch(n);
+    }
+
+    @Override
+    public ProviderRegistry getRegistry() {
+        return delegate.getRegistry();
+    }
+
+    @Override
+    public void setStrategy(BalancingStrategy strategy) {
+        delegate.setStrategy(strategy);
+    }
+
+    @Override
+    public MetricsSnapshot getMetrics() {
+        return delegate.getMetrics();
+    }
+
+    @Override
+    public Map<UUID, HistogramSnapshot> getLatencyInterval() {
+        return delegate.getLatencyInterval();
+    }
+
+    @Override
+    public void clearMetrics() {
+        delegate.clearMetrics();
+    }
+
+    /*
+     * Serve the synchronous route from the asynchronous one, keeping the contract of get(): unavailability is thrown
+     * rather than reported by the returned future.
+     */
+    static Future synchronousResult(CompletableFuture<String> result) throws ServiceUnavailableException {
+        if (result.isCompletedExceptionally()) {
+            try {
+                result.join();
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof ServiceUnavailableException) {
+                    throw (ServiceUnavailableException) ce.getCause();
+                }
+            }
+        }
+        return result;
+    }
+}
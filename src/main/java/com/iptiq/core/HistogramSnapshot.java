@@ -0,0 +1,85 @@
+package com.iptiq.core;
+
+/**
+ * Immutable point-in-time copy of a latency histogram, values in nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+    public static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0L, 0L);
+
+    private final long[] counts;
+
+    private final long count;
+
+    private final long max;
+
+    private final long sum;
+
+    HistogramSnapshot(long[] counts, long max, long sum) {
+        this.counts = counts;
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        this.count = total;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    // Sum of the recorded values
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Number of recorded values below or equal to the given one. Values sharing its bucket are counted as well, which
+     * may overcount by the bucket precision (about 3%).
+     */
+    public long getCountAtOrBelow(long value) {
+        if (value < 0) {
+            return 0L;
+        }
+        int last = LatencyHistogram.bucketIndex(Math.min(value, LatencyHistogram.HIGHEST_TRACKABLE_VALUE));
+        long total = 0;
+        for (int i = 0; i <= last; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    // Histogram of the values of both snapshots, e.g. to aggregate the providers of a load balancer
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        long[] merged = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            merged[i] = counts[i] + other.counts[i];
+        }
+        return new HistogramSnapshot(merged, Math.max(max, other.max), sum + other.sum);
+    }
+
+    /**
+     * Value below or equal to which the given percentage of the recorded values fall, e.g. 99.9.
+     * Reported as the upper bound of its bucket, capped by the highest recorded value. 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, LatencyHistogram.bucketUpperBound(i));
+            }
+        }
+        return max;
+    }
+}
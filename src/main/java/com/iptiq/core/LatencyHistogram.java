@@ -0,0 +1,152 @@
+package com.iptiq.core;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of latencies in nanoseconds. Values are counted in buckets growing with their
+ * magnitude: each power of two range is split in 32 linear sub-buckets, which bounds the relative error of the
+ * reported percentiles to about 3% up to an hour, longer values sharing the last bucket.
+ * Recording is a few atomic additions, allocation free and safe from any number of threads.
+ * Interval snapshots drain the counts recorded since the previous one, each recorded value landing in exactly one
+ * interval with its count, sum and max, while cumulative snapshots keep covering everything recorded. The counters
+ * backing the intervals are only allocated on the first interval snapshot.
+ */
+public class LatencyHistogram {
+
+    // Values below are counted exactly, one bucket each
+    private static final int LINEAR_BUCKETS = 64;
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Longer values are counted in the last bucket, the exact max and sum being kept
+    static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+    // Linear buckets, then one range of sub-buckets per power of two up to the highest trackable value
+    static final int BUCKET_COUNT = bucketIndex(HIGHEST_TRACKABLE_VALUE) + 1;
+
+    // Counts recorded since the last interval snapshot, swapped with a clean set on each interval snapshot
+    private volatile Counts active = new Counts();
+
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+
+    // Clean counts swapped in by the next interval snapshot, guarded by this
+    private Counts spare;
+
+    // Counts of the previous intervals, guarded by this
+    private long[] drained;
+
+    private long drainedMax;
+
+    private long drainedSum;
+
+    public void record(long valueNanos) {
+        long value = Math.max(0L, valueNanos);
+        long criticalValue = phaser.writerCriticalSectionEnter();
+        try {
+            active.record(value);
+        } finally {
+            phaser.writerCriticalSectionExit(criticalValue);
+        }
+    }
+
+    public synchronized void reset() {
+        swap().clear();
+        if (drained != null) {
+            Arrays.fill(drained, 0L);
+        }
+        drainedMax = 0L;
+        drainedSum = 0L;
+    }
+
+    // Everything recorded since the creation or the last reset
+    public synchronized HistogramSnapshot snapshot() {
+        Counts current = active;
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = (drained != null ? drained[i] : 0L) + current.counts.get(i);
+        }
+        return new HistogramSnapshot(copy, Math.max(drainedMax, current.max.get()), drainedSum + current.sum.get());
+    }
+
+    // What was recorded since the previous interval snapshot
+    public synchronized HistogramSnapshot intervalSnapshot() {
+        if (drained == null) {
+            drained = new long[BUCKET_COUNT];
+        }
+        Counts previous = swap();
+        long[] interval = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            interval[i] = previous.counts.get(i);
+            drained[i] += interval[i];
+        }
+        long intervalMax = previous.max.get();
+        long intervalSum = previous.sum.get();
+        previous.clear();
+        drainedMax = Math.max(drainedMax, intervalMax);
+        drainedSum += intervalSum;
+        return new HistogramSnapshot(interval, intervalMax, intervalSum);
+    }
+
+    /*
+     * Publishes clean counts to the writers and returns the previous ones once no writer is recording in them anymore.
+     * The caller clears them, they become the spare of the next swap.
+     */
+    private Counts swap() {
+        Counts previous = active;
+        active = spare != null ? spare : new Counts();
+        phaser.flipPhase();
+        spare = previous;
+        return previous;
+    }
+
+    // Counts of one interval
+    private static final class Counts {
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+        private final AtomicLong max = new AtomicLong();
+
+        private final AtomicLong sum = new AtomicLong();
+
+        void record(long value) {
+            counts.incrementAndGet(bucketIndex(Math.min(value, HIGHEST_TRACKABLE_VALUE)));
+            sum.addAndGet(value);
+            long currentMax = max.get();
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(i, 0L);
+            }
+            max.set(0L);
+            sum.set(0L);
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        // value >> shift falls in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    // Highest value counted in the bucket
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -2,7 +2,10 @@ package com.iptiq.core;
 
 import com.iptiq.registry.ProviderRegistry;
 
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 public interface LoadBalancer {
@@ -10,14 +13,32 @@ public interface LoadBalancer {
     // route exposed to the external world
     Future get() throws ServiceUnavailableException;
 
+    // route for keyed requests, sticky to one provider with the CONSISTENT_HASH strategy
+    Future get(String key) throws ServiceUnavailableException;
+
+    // non blocking route, completed by the provider worker. Unavailability is reported through the returned future,
+    // and cancelling it (or any timeout composed on it, e.g. orTimeout) releases the provider worker
+    CompletableFuture<String> getAsync();
+
+    CompletableFuture<String> getAsync(String key);
+
+    // fan out route for n identical requests, spread over the providers in a single selection pass. The returned
+    // future completes with the n responses, or exceptionally as soon as one of the requests failed, the pending ones
+    // being cancelled then
+    CompletableFuture<List<String>> getBatch(int n);
+
     // Return providers registry
     ProviderRegistry getRegistry();
 
-    // Apply balancing strategy
+    // Apply balancing strategy, kept over configuration reloads
     void setStrategy(BalancingStrategy strategy);
 
-    // Return metrics to calls per provider ID
-    Map<String, Integer> getMetrics();
+    // Return a point-in-time snapshot of the calls metrics per provider ID
+    MetricsSnapshot getMetrics();
+
+    // Return the latency recorded since the previous call per provider ID, e.g. for periodic reporting.
+    // Histograms of several providers can be merged into a load balancer wide one
+    Map<UUID, HistogramSnapshot> getLatencyInterval();
 
     // Clear load balancer metrics
     void clearMetrics();
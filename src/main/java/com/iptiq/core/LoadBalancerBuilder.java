@@ -1,7 +1,10 @@
 package com.iptiq.core;
 
 import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.CacheConfig;
 import com.iptiq.config.ConfigProvider;
+import com.iptiq.config.HedgingConfig;
+import com.iptiq.config.RetryConfig;
 import com.iptiq.registry.InMemoryProviderRegistry;
 import com.iptiq.registry.ProviderRegistry;
 
@@ -11,14 +14,30 @@ public class LoadBalancerBuilder {
 
     private BalancingStrategy strategy;
 
+    // Strategy given explicitly, configuration reloads do not change it then
+    private boolean strategyChosen;
+
+    private HedgingConfig hedging;
+
+    private RetryConfig retry;
+
+    private boolean coalesceKeyedRequests;
+
+    private CacheConfig cache;
+
     public LoadBalancerBuilder() {
         ApplicationConfig config = ConfigProvider.getConfig();
         this.strategy = config.getLoadBalancer().getDefaultStrategy();
+        this.hedging = config.getLoadBalancer().getHedging();
+        this.retry = config.getLoadBalancer().getRetry();
+        this.coalesceKeyedRequests = config.getLoadBalancer().isCoalesceKeyedRequests();
+        this.cache = config.getLoadBalancer().getCache();
         this.registry = new InMemoryProviderRegistry(config.getRegistry());
     }
 
     public LoadBalancerBuilder withBalancingStrategy(BalancingStrategy strategy) {
         this.strategy = strategy;
+        this.strategyChosen = true;
         return this;
     }
 
@@ -27,7 +46,41 @@ public class LoadBalancerBuilder {
         return this;
     }
 
+    public LoadBalancerBuilder withHedging(HedgingConfig hedging) {
+        this.hedging = hedging;
+        return this;
+    }
+
+    public LoadBalancerBuilder withRetry(RetryConfig retry) {
+        this.retry = retry;
+        return this;
+    }
+
+    public LoadBalancerBuilder withKeyedRequestsCoalescing(boolean coalesceKeyedRequests) {
+        this.coalesceKeyedRequests = coalesceKeyedRequests;
+        return this;
+    }
+
+    public LoadBalancerBuilder withCache(CacheConfig cache) {
+        this.cache = cache;
+        return this;
+    }
+
     public LoadBalancer build() {
-        return new LoadBalancerImpl(this.registry, this.strategy);
+        LoadBalancerImpl impl = new LoadBalancerImpl(this.registry, this.strategy, this.hedging, this.retry);
+        if (strategyChosen) {
+            impl.setStrategy(this.strategy);
+        }
+        // Configuration reloads switch the strategy of the running load balancer, unless chosen explicitly
+        ConfigProvider.addChangeListener(impl);
+        LoadBalancer loadBalancer = impl;
+        if (coalesceKeyedRequests) {
+            loadBalancer = new CoalescingLoadBalancer(loadBalancer);
+        }
+        if (cache.isEnabled()) {
+            // Outermost, cache hits do not even reach the coalescing layer
+            loadBalancer = new CachingLoadBalancer(loadBalancer, new ResponseCache(cache.getTtlMillis(), cache.getMaxEntries()));
+        }
+        return loadBalancer;
     }
 }
@@ -1,79 +1,719 @@
 package com.iptiq.core;
 
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.ConfigChangeListener;
+import com.iptiq.config.HedgingConfig;
+import com.iptiq.config.RetryConfig;
+import com.iptiq.diagnostics.FlightRecorderSupport;
+import com.iptiq.diagnostics.SelectionEvent;
 import com.iptiq.registry.ProviderRegistry;
+import com.iptiq.registry.ProviderRegistryListener;
+import com.iptiq.registry.ProviderSnapshot;
 import com.iptiq.providers.Action;
 import com.iptiq.providers.Provider;
 import com.iptiq.providers.ProviderActionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
-public class LoadBalancerImpl implements LoadBalancer {
+public class LoadBalancerImpl implements LoadBalancer, ProviderRegistryListener, ConfigChangeListener {
 
     private Logger logger = LoggerFactory.getLogger(LoadBalancerImpl.class);
 
+    // Upper bound of the hedging and retry budgets, so that a quiet period does not allow a burst of extra requests
+    private static final int MAX_BUDGET_TOKENS = 10;
+
+    // Number of deregistered providers which metrics are still reported, the oldest ones are forgotten beyond
+    static final int RETIRED_PROVIDERS_METRICS = 64;
+
     private final ProviderRegistry registry;
 
-    private BalancingStrategy strategy;
+    private volatile BalancingStrategy strategy;
+
+    // Strategy chosen by the application, through the builder or setStrategy(), instead of the configured default one
+    private volatile boolean strategyChosen;
 
     private final AtomicInteger currentProviderIndex = new AtomicInteger();
 
-    // Quick and dirty way to get some metrics on the get calls count (usually would use a statsd client or similar stack)
-    private Map<String, Integer> metricsCount;
+    private final SmoothWeightedRoundRobin weightedRoundRobin = new SmoothWeightedRoundRobin();
+
+    private final ConsistentHashRing hashRing = new ConsistentHashRing();
+
+    // Per provider request counters, registered as soon as a provider joins the registry
+    // (usually would use a statsd client or similar stack)
+    private final ConcurrentHashMap<UUID, ProviderMetrics> providerMetrics = new ConcurrentHashMap<>();
+
+    // Deregistered providers which metrics are kept, oldest first, guarded by itself. Bounded so that the metrics do
+    // not grow with the providers churn.
+    private final LinkedHashSet<UUID> retiredProviders = new LinkedHashSet<>();
+
+    // Requests refused because no provider was available
+    private final LongAdder unavailableCount = new LongAdder();
+
+    private final HedgingConfig hedging;
+
+    private final RetryConfig retry;
+
+    // Bounds the duplicate requests to the configured percentage of the traffic
+    private final TokenBudget hedgingBudget;
+
+    // Timer firing the hedges, only created when hedging is enabled
+    private final ScheduledExecutorService hedgingTimer;
+
+    // Bounds the retries to the configured percentage of the traffic
+    private final TokenBudget retryBudget;
+
+    // Duplicate requests sent by hedging
+    private final LongAdder hedgedCount = new LongAdder();
+
+    // Failed or rejected requests retried on another provider
+    private final LongAdder retriedCount = new LongAdder();
 
     public LoadBalancerImpl(ProviderRegistry registry, BalancingStrategy strategy) {
-        metricsCount = new HashMap<>();
+        this(registry, strategy, new HedgingConfig(), new RetryConfig());
+    }
+
+    public LoadBalancerImpl(ProviderRegistry registry, BalancingStrategy strategy, HedgingConfig hedging, RetryConfig retry) {
         this.registry = registry;
         this.strategy = strategy;
+        this.hedging = hedging;
+        this.retry = retry;
+        this.hedgingBudget = new TokenBudget(hedging.getBudgetPercent(), MAX_BUDGET_TOKENS);
+        this.retryBudget = new TokenBudget(retry.getBudgetPercent(), MAX_BUDGET_TOKENS);
+        this.hedgingTimer = hedging.isEnabled() ? createHedgingTimer() : null;
+        registry.addRegistryListener(this);
+    }
+
+    private static ScheduledExecutorService createHedgingTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "hedging-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most requests complete before their hedge is due, do not keep the cancelled timers around
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
     }
 
     @Override
     public Future get() throws ServiceUnavailableException {
-        Provider selected = selectNextAvailableProvider();
+        return get(null);
+    }
+
+    @Override
+    public Future get(String key) throws ServiceUnavailableException {
+        if (hedgingTimer != null || retry.isEnabled()) {
+            return submit(key);
+        }
+        return dispatch(key);
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync() {
+        return getAsync(null);
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String key) {
+        try {
+            return submit(key);
+        } catch (ServiceUnavailableException sue) {
+            return CompletableFuture.failedFuture(sue);
+        }
+    }
+
+    /*
+     * Select a provider and hand it the request, the provider Future being returned as is.
+     */
+    private Future<?> dispatch(String key) throws ServiceUnavailableException {
+        Provider selected = selectNextAvailableProvider(key);
+        try {
+            return invoke(selected, null);
+        } catch (RejectedExecutionException ree) {
+            // Request was not started (overloaded, shut down, circuit breaker not permitting calls), fail over right away
+            Future<?> invocation = invokeAlternative(selected, null, false);
+            if (invocation == null) {
+                unavailableCount.increment();
+                throw new ServiceUnavailableException();
+            }
+            return invocation;
+        }
+    }
+
+    /*
+     * Select a provider and hand it a request completed by the provider worker itself, so that no thread has to block
+     * on the returned future. The request may then be hedged or retried on other providers.
+     */
+    private CompletableFuture<String> submit(String key) throws ServiceUnavailableException {
+        Request request = new Request();
+        Provider selected = selectNextAvailableProvider(key);
+        hedgingBudget.deposit();
+        retryBudget.deposit();
+        try {
+            invoke(selected, request);
+        } catch (RejectedExecutionException ree) {
+            if (invokeAlternative(selected, request, false) == null) {
+                unavailableCount.increment();
+                throw new ServiceUnavailableException();
+            }
+        }
+
+        CompletableFuture<String> result = request.result;
+        if (hedgingTimer != null && !result.isDone()) {
+            ScheduledFuture<?> hedge = hedgingTimer.schedule(() -> hedge(request), hedging.getDelayMillis(),
+                    TimeUnit.MILLISECONDS);
+            result.whenComplete((value, failure) -> hedge.cancel(false));
+        }
+        // Releases the workers of the invocations that lost, or all of them when the caller gives up (cancel, orTimeout...)
+        result.whenComplete((value, failure) -> request.cancelInvocations());
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getBatch(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + n);
+        }
+        if (n == 0) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        List<Request> requests = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            requests.add(new Request());
+        }
+        // Single snapshot read and selection pass for the whole batch
+        ProviderSnapshot providers = registry.getAvailableSnapshot();
+        int[] allocation = allocateBatch(providers, n);
+        if (allocation == null) {
+            unavailableCount.add(n);
+            return CompletableFuture.failedFuture(new ServiceUnavailableException());
+        }
+        hedgingBudget.deposit(n);
+        retryBudget.deposit(n);
+
+        // Requests are submitted grouped per provider, sharing its action and metrics
+        int next = 0;
+        for (int i = 0; i < allocation.length; i++) {
+            if (allocation[i] > 0) {
+                invokeGroup(providers.get(i), requests.subList(next, next + allocation[i]));
+                next += allocation[i];
+            }
+        }
+
+        // Completed with the responses once all the requests succeeded, or with the first failure
+        CompletableFuture<List<String>> batch = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(n);
+        for (Request request : requests) {
+            request.result.whenComplete((value, failure) -> {
+                request.cancelInvocations();
+                if (failure != null) {
+                    batch.completeExceptionally(failure);
+                } else if (remaining.decrementAndGet() == 0) {
+                    List<String> responses = new ArrayList<>(n);
+                    for (Request completed : requests) {
+                        responses.add(completed.result.join());
+                    }
+                    batch.complete(responses);
+                }
+            });
+        }
+        // Batch failed, or caller giving up on it (cancel, orTimeout...): releases the workers of the pending requests
+        batch.whenComplete((value, failure) -> {
+            if (failure != null) {
+                requests.forEach(request -> request.result.cancel(true));
+            }
+        });
+        return batch;
+    }
+
+    private void invokeGroup(Provider provider, List<Request> requests) {
+        ProviderMetrics metrics = metricsFor(provider);
+        @SuppressWarnings("unchecked")
+        Callable<String> action = (Callable<String>) new ProviderActionFactory(provider).getProviderAction(Action.GET);
+        int dispatched = 0;
+        for (Request request : requests) {
+            try {
+                invoke(provider, metrics, action, request);
+                dispatched++;
+            } catch (RejectedExecutionException ree) {
+                if (invokeAlternative(provider, request, false) == null) {
+                    unavailableCount.increment();
+                    request.result.completeExceptionally(new ServiceUnavailableException());
+                }
+            }
+        }
+        metrics.recordDispatched(dispatched);
+    }
 
-        // Increment metrics counters
-        String providerUuid = selected.getUuid().toString();
-        if (metricsCount.get(providerUuid) == null) {
-            metricsCount.put(providerUuid, 1);
-        } else {
-            metricsCount.put(providerUuid, metricsCount.get(providerUuid) + 1);
+    /*
+     * Number of requests of the batch assigned to each provider of the snapshot, null if none is available.
+     * Each request goes to the provider ranked first by the current strategy once the requests already assigned are
+     * accounted for, among the providers with spare workers. Once no provider has spare workers left, the remaining
+     * requests are spread the same way and wait in the provider queues.
+     */
+    private int[] allocateBatch(ProviderSnapshot providers, int n) {
+        int size = providers.size();
+        int[] assigned = new int[size];
+        int[] outstanding = new int[size];
+        int[] spare = new int[size];
+        boolean anyAvailable = false;
+        for (int i = 0; i < size; i++) {
+            Provider provider = providers.get(i);
+            outstanding[i] = provider.getOutstandingRequests();
+            if (provider.isAvailable()) {
+                anyAvailable = true;
+                spare[i] = Math.max(0, provider.getCapacity() - outstanding[i]);
+            } else {
+                spare[i] = -1;
+            }
+        }
+        if (!anyAvailable) {
+            return null;
+        }
+        BalancingStrategy batchStrategy = strategy;
+        // Rotate the scan start so that ties are broken evenly across batches
+        int start = batchStrategy == BalancingStrategy.ROUND_ROBIN
+                ? Math.floorMod(currentProviderIndex.getAndAdd(n), size)
+                : ThreadLocalRandom.current().nextInt(size);
+        // Providers ranked by score, ties going to the first one from the scan start. The score of a provider only
+        // changes when a request is assigned to it, so each request costs a poll and an offer: O(n log providers).
+        double[] scores = new double[size];
+        PriorityQueue<Integer> ranking = new PriorityQueue<>(size, Comparator.<Integer>comparingDouble(i -> scores[i])
+                .thenComparingInt(i -> Math.floorMod(i - start, size)));
+        for (int i = 0; i < size; i++) {
+            if (spare[i] > 0) {
+                scores[i] = batchScore(batchStrategy, providers.get(i), outstanding[i], 0);
+                ranking.add(i);
+            }
+        }
+        boolean spareLeft = true;
+        for (int r = 0; r < n; r++) {
+            if (ranking.isEmpty()) {
+                // Every available provider is full, queue the rest of the batch
+                spareLeft = false;
+                for (int i = 0; i < size; i++) {
+                    if (spare[i] >= 0) {
+                        scores[i] = batchScore(batchStrategy, providers.get(i), outstanding[i], assigned[i]);
+                        ranking.add(i);
+                    }
+                }
+            }
+            int selected = ranking.poll();
+            assigned[selected]++;
+            if (!spareLeft || assigned[selected] < spare[selected]) {
+                scores[selected] = batchScore(batchStrategy, providers.get(selected), outstanding[selected],
+                        assigned[selected]);
+                ranking.add(selected);
+            }
         }
+        return assigned;
+    }
+
+    // Rank of a provider for the next request of a batch, the lowest score winning
+    private static double batchScore(BalancingStrategy strategy, Provider provider, int outstanding, int assigned) {
+        switch (strategy) {
+            case LEAST_OUTSTANDING_REQUESTS:
+            case P2C:
+                return outstanding + assigned;
+            case PEAK_EWMA:
+                return provider.getLatencyEwmaNanos() * (outstanding + assigned + 1);
+            case WEIGHTED_ROUND_ROBIN:
+                return (double) assigned / provider.getWeight();
+            default:
+                // ROUND_ROBIN, RANDOM, and CONSISTENT_HASH without key: even spread
+                return assigned;
+        }
+    }
+
+    // Request still pending after the hedging delay: send a duplicate to another provider, first response wins
+    private void hedge(Request request) {
+        if (request.result.isDone() || !hedgingBudget.tryWithdraw()) {
+            return;
+        }
+        // Counted upfront, the hedge may complete the result before invokeAlternative() returns
+        hedgedCount.increment();
+        if (invokeAlternative(null, request, true) == null) {
+            // The hedge is best effort, the first invocation is still running
+            hedgedCount.decrement();
+        }
+    }
+
+    // Last pending invocation of the request failed: retry on a provider not tried yet, within the retry budget
+    private void retry(Request request, Throwable failure) {
+        if (request.canRetry() && retryBudget.tryWithdraw()) {
+            // Counted upfront, the retry may complete the result before invokeAlternative() returns
+            retriedCount.increment();
+            if (invokeAlternative(null, request, false) != null) {
+                return;
+            }
+            retriedCount.decrement();
+        }
+        request.result.completeExceptionally(failure);
+    }
+
+    /*
+     * Hand the request to the first provider accepting it, scanned from a random offset, the excluded provider and the
+     * ones the request already tried being skipped. Null if none accepted it.
+     */
+    private Future<?> invokeAlternative(Provider excluded, Request request, boolean availableOnly) {
+        ProviderSnapshot providers = registry.getAvailableSnapshot();
+        int size = providers.size();
+        int start = size == 0 ? 0 : ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            Provider candidate = providers.get((start + i) % size);
+            if (candidate.equals(excluded) || (request != null && request.hasTried(candidate))
+                    || (availableOnly && !candidate.isAvailable())) {
+                continue;
+            }
+            try {
+                return invoke(candidate, request);
+            } catch (RejectedExecutionException ree) {
+                // try the next one
+            }
+        }
+        return null;
+    }
+
+    private Future<?> invoke(Provider provider, Request request) {
+        ProviderMetrics metrics = metricsFor(provider);
 
         // If reverse proxy operations would be handle at load balancer level, they would be implemented here.
-        return selected.invokeProvider(new ProviderActionFactory(selected).getProviderAction(Action.GET));
+        @SuppressWarnings("unchecked")
+        Callable<String> action = (Callable<String>) new ProviderActionFactory(provider).getProviderAction(Action.GET);
+        Future<?> invocation = invoke(provider, metrics, action, request);
+        metrics.recordDispatched();
+        return invocation;
     }
 
-    private Provider selectNextAvailableProvider() throws ServiceUnavailableException {
-        List<Provider> providers = registry.getAvailableServices();
-        if (providers.size() == 0) {
+    // Submission shared by the single and batch routes, dispatched requests being recorded by the caller
+    private Future<?> invoke(Provider provider, ProviderMetrics metrics, Callable<String> action, Request request) {
+        Attempt attempt = request != null ? request.attempting(provider) : null;
+        Future<?> invocation;
+        try {
+            invocation = provider.invokeProvider(trackedAction(action, metrics, request, attempt));
+        } catch (RejectedExecutionException ree) {
+            metrics.recordRejected();
+            if (request != null) {
+                request.attemptRejected();
+            }
+            throw ree;
+        }
+        if (request != null) {
+            request.started(attempt, invocation);
+        }
+        return invocation;
+    }
+
+    // package-private so that the selection cost can be benchmarked on its own
+    Provider selectNextAvailableProvider(String key) throws ServiceUnavailableException {
+        // Lock free read of the current registry snapshot, which cannot change under our feet.
+        ProviderSnapshot providers = registry.getAvailableSnapshot();
+        BalancingStrategy currentStrategy = strategy;
+        SelectionEvent event = FlightRecorderSupport.AVAILABLE ? new SelectionEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        Provider selected = select(providers, currentStrategy, key);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.strategy = currentStrategy.name();
+                event.provider = selected == null ? null : selected.getUuid().toString();
+                event.candidates = providers.size();
+                event.commit();
+            }
+        }
+        if (selected == null) {
             // Either no provider has been registered, or all of them are currently busy.
+            unavailableCount.increment();
             throw new ServiceUnavailableException();
         }
+        return selected;
+    }
 
-        synchronized (providers) {
-            Provider selected;
+    // Provider chosen by the given strategy among the snapshot ones, null if none is available
+    private Provider select(ProviderSnapshot providers, BalancingStrategy strategy, String key) {
+        Provider selected = null;
+        if (!providers.isEmpty()) {
             switch (strategy) {
                 case ROUND_ROBIN: {
-                    if (currentProviderIndex.get() >= providers.size()) {
-                        currentProviderIndex.set(0);
+                    selected = firstAvailableFrom(providers, Math.floorMod(currentProviderIndex.getAndIncrement(), providers.size()));
+                    break;
+                }
+                case LEAST_OUTSTANDING_REQUESTS: {
+                    selected = selectLeastOutstanding(providers);
+                    break;
+                }
+                case WEIGHTED_ROUND_ROBIN: {
+                    selected = weightedRoundRobin.select(providers);
+                    break;
+                }
+                case PEAK_EWMA: {
+                    selected = selectLowestLatencyCost(providers);
+                    break;
+                }
+                case CONSISTENT_HASH: {
+                    if (key != null) {
+                        selected = hashRing.select(providers, key);
+                        break;
                     }
-                    selected = providers.get(currentProviderIndex.get());
-                    currentProviderIndex.incrementAndGet();
+                    // Requests without key are spread randomly
+                    selected = firstAvailableFrom(providers, ThreadLocalRandom.current().nextInt(providers.size()));
+                    break;
+                }
+                case P2C: {
+                    selected = selectPowerOfTwoChoices(providers);
                     break;
                 }
                 default: {
                     // RANDOM Load balancing
-                    Random rand = new Random();
-                    selected = providers.get(rand.nextInt(providers.size()));
+                    selected = firstAvailableFrom(providers, ThreadLocalRandom.current().nextInt(providers.size()));
                 }
             }
-            return selected;
+        }
+        return selected;
+    }
+
+    // First available provider starting at the given index, BUSY ones being skipped. Null if none is available.
+    private static Provider firstAvailableFrom(ProviderSnapshot providers, int start) {
+        int size = providers.size();
+        for (int i = 0; i < size; i++) {
+            Provider candidate = providers.get((start + i) % size);
+            if (candidate.isAvailable()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private Provider selectLeastOutstanding(ProviderSnapshot providers) {
+        // Rotate the scan start so that equally loaded providers share the traffic
+        int size = providers.size();
+        int start = Math.floorMod(currentProviderIndex.getAndIncrement(), size);
+        Provider selected = null;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < size && lowest > 0; i++) {
+            Provider candidate = providers.get((start + i) % size);
+            int outstanding = candidate.getOutstandingRequests();
+            if (outstanding < lowest && candidate.isAvailable()) {
+                selected = candidate;
+                lowest = outstanding;
+            }
+        }
+        return selected;
+    }
+
+    private Provider selectLowestLatencyCost(ProviderSnapshot providers) {
+        // cost = expected latency x load the request would queue behind
+        int size = providers.size();
+        int start = Math.floorMod(currentProviderIndex.getAndIncrement(), size);
+        Provider selected = null;
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            Provider candidate = providers.get((start + i) % size);
+            double cost = latencyCost(candidate);
+            if ((selected == null || cost < lowest) && candidate.isAvailable()) {
+                selected = candidate;
+                lowest = cost;
+            }
+        }
+        return selected;
+    }
+
+    private static double latencyCost(Provider provider) {
+        return provider.getLatencyEwmaNanos() * (provider.getOutstandingRequests() + 1);
+    }
+
+    private Provider selectPowerOfTwoChoices(ProviderSnapshot providers) {
+        int size = providers.size();
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        if (size == 1) {
+            return firstAvailableFrom(providers, 0);
+        }
+        // Sample two distinct providers and keep the least loaded available one
+        int first = rand.nextInt(size);
+        int second = rand.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Provider a = providers.get(first);
+        Provider b = providers.get(second);
+        if (!a.isAvailable()) {
+            return b.isAvailable() ? b : firstAvailableFrom(providers, first);
+        }
+        if (!b.isAvailable()) {
+            return a;
+        }
+        return b.getOutstandingRequests() < a.getOutstandingRequests() ? b : a;
+    }
+
+    private ProviderMetrics metricsFor(Provider provider) {
+        ProviderMetrics metrics = providerMetrics.get(provider.getUuid());
+        if (metrics == null) {
+            if (!registry.getAvailableSnapshot().contains(provider)) {
+                // deregistered meanwhile and its metrics already forgotten, not to be tracked again
+                return new ProviderMetrics(provider.getUuid());
+            }
+            // provider registered before this load balancer was attached to the registry
+            metrics = providerMetrics.computeIfAbsent(provider.getUuid(), ProviderMetrics::new);
+        }
+        return metrics;
+    }
+
+    private Callable<String> trackedAction(Callable<String> action, ProviderMetrics metrics, Request request, Attempt attempt) {
+        long submitNanos = System.nanoTime();
+        return () -> {
+            String result;
+            try {
+                result = action.call();
+                metrics.recordSuccess();
+                metrics.recordLatency(System.nanoTime() - submitNanos);
+            } catch (Throwable e) {
+                // Errors included, the request must reach an outcome whatever the provider throws
+                if (request != null && request.result.isDone()) {
+                    // Superseded by another invocation of the same request (hedging) and cancelled, not a failure
+                    throw e;
+                }
+                metrics.recordFailure();
+                metrics.recordLatency(System.nanoTime() - submitNanos);
+                if (request != null && request.failed(attempt)) {
+                    retry(request, e);
+                }
+                throw e;
+            }
+            if (request != null) {
+                // Still running in the provider worker: completing the result cancels the other invocations only
+                request.succeeded(attempt, result);
+            }
+            return result;
+        };
+    }
+
+    /*
+     * One load balanced request, possibly spread over several invocations: a hedge, or retries on other providers.
+     * The first invocation completing the result wins, the others are cancelled.
+     */
+    private final class Request {
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        // Providers invoked so far, and the attempts they accepted, guarded by this
+        private final List<Provider> tried = new ArrayList<>(2);
+
+        private final List<Attempt> attempts = new ArrayList<>(2);
+
+        // Invocations started and not completed yet, guarded by this
+        private int pending;
+
+        synchronized boolean hasTried(Provider provider) {
+            return tried.contains(provider);
+        }
+
+        synchronized boolean canRetry() {
+            return retry.isEnabled() && tried.size() < retry.getMaxAttempts();
+        }
+
+        synchronized Attempt attempting(Provider provider) {
+            tried.add(provider);
+            pending++;
+            Attempt attempt = new Attempt();
+            attempts.add(attempt);
+            return attempt;
+        }
+
+        synchronized void attemptRejected() {
+            pending--;
+        }
+
+        void started(Attempt attempt, Future<?> invocation) {
+            boolean cancel;
+            synchronized (this) {
+                attempt.invocation = invocation;
+                // Completed meanwhile, cancelInvocations() may have missed this one. An attempt which already ran to
+                // completion, possibly the one which completed the result, is left alone.
+                cancel = result.isDone() && !attempt.finished;
+            }
+            if (cancel) {
+                invocation.cancel(true);
+            }
+        }
+
+        void succeeded(Attempt attempt, String value) {
+            synchronized (this) {
+                attempt.finished = true;
+            }
+            result.complete(value);
+        }
+
+        // An invocation failed, true if it was the last pending one so that the request has to be retried or failed
+        synchronized boolean failed(Attempt attempt) {
+            attempt.finished = true;
+            return --pending == 0;
+        }
+
+        // Cancels the invocations still running, never the ones which already returned from the provider call
+        void cancelInvocations() {
+            List<Future<?>> running = new ArrayList<>(2);
+            synchronized (this) {
+                for (Attempt attempt : attempts) {
+                    if (attempt.invocation != null && !attempt.finished) {
+                        running.add(attempt.invocation);
+                    }
+                }
+            }
+            running.forEach(invocation -> invocation.cancel(true));
+        }
+    }
+
+    // One invocation of a request on a provider, guarded by the request
+    private static final class Attempt {
+
+        private Future<?> invocation;
+
+        // The provider call returned or threw, the invocation must not be cancelled anymore
+        private boolean finished;
+    }
+
+    @Override
+    public void providerRegistered(Provider provider) {
+        synchronized (retiredProviders) {
+            // back in rotation, e.g. once its circuit breaker half opens
+            retiredProviders.remove(provider.getUuid());
+        }
+        providerMetrics.computeIfAbsent(provider.getUuid(), ProviderMetrics::new);
+    }
+
+    @Override
+    public void providerDeregistered(Provider provider) {
+        // Metrics are kept so that the history of a deregistered provider is still reported, up to a limit
+        synchronized (retiredProviders) {
+            retiredProviders.add(provider.getUuid());
+            if (retiredProviders.size() > RETIRED_PROVIDERS_METRICS) {
+                Iterator<UUID> oldest = retiredProviders.iterator();
+                providerMetrics.remove(oldest.next());
+                oldest.remove();
+            }
         }
     }
 
@@ -83,18 +723,48 @@ public class LoadBalancerImpl implements LoadBalancer {
     }
 
     @Override
-    public Map<String, Integer> getMetrics() {
-        return this.metricsCount;
+    public MetricsSnapshot getMetrics() {
+        Map<UUID, ProviderMetricsSnapshot> providers = new HashMap<>();
+        for (ProviderMetrics metrics : providerMetrics.values()) {
+            ProviderMetricsSnapshot snapshot = metrics.snapshot();
+            providers.put(snapshot.getProviderUuid(), snapshot);
+        }
+        return new MetricsSnapshot(providers, unavailableCount.sum(), hedgedCount.sum(), retriedCount.sum());
+    }
+
+    @Override
+    public Map<UUID, HistogramSnapshot> getLatencyInterval() {
+        Map<UUID, HistogramSnapshot> intervals = new HashMap<>();
+        for (ProviderMetrics metrics : providerMetrics.values()) {
+            intervals.put(metrics.getProviderUuid(), metrics.latencyInterval());
+        }
+        return intervals;
     }
 
     @Override
     public void clearMetrics() {
-        this.metricsCount.clear();
+        for (ProviderMetrics metrics : providerMetrics.values()) {
+            metrics.reset();
+        }
+        unavailableCount.reset();
+        hedgedCount.reset();
+        retriedCount.reset();
     }
 
     @Override
     public void setStrategy(BalancingStrategy strategy) {
         this.strategy = strategy;
+        strategyChosen = true;
+    }
+
+    @Override
+    public void configChanged(ApplicationConfig previous, ApplicationConfig current) {
+        // Follow the configured default strategy when it changed, unless the application chose the strategy
+        BalancingStrategy configured = current.getLoadBalancer().getDefaultStrategy();
+        if (!strategyChosen && (previous == null || configured != previous.getLoadBalancer().getDefaultStrategy())) {
+            logger.info("switch to the configured strategy " + configured);
+            this.strategy = configured;
+        }
     }
 
     public BalancingStrategy getStrategy() {
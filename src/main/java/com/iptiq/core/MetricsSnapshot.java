@@ -0,0 +1,114 @@
+package com.iptiq.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable point-in-time copy of the load balancer metrics, safe to hand over to any reporting code.
+ */
+public final class MetricsSnapshot {
+
+    private final Map<UUID, ProviderMetricsSnapshot> providers;
+
+    // requests refused because no provider was available
+    private final long unavailable;
+
+    // duplicate requests sent by hedging
+    private final long hedged;
+
+    // failed or rejected requests retried on another provider
+    private final long retried;
+
+    // keyed requests served by sharing the in-flight call of an identical request
+    private final long coalesced;
+
+    // keyed requests served from the response cache, or not found there
+    private final long cacheHits;
+
+    private final long cacheMisses;
+
+    // responses evicted from the cache to stay within its size bound
+    private final long cacheEvictions;
+
+    MetricsSnapshot(Map<UUID, ProviderMetricsSnapshot> providers, long unavailable, long hedged, long retried) {
+        this(providers, unavailable, hedged, retried, 0L, 0L, 0L, 0L);
+    }
+
+    private MetricsSnapshot(Map<UUID, ProviderMetricsSnapshot> providers, long unavailable, long hedged, long retried,
+                            long coalesced, long cacheHits, long cacheMisses, long cacheEvictions) {
+        this.providers = Collections.unmodifiableMap(providers);
+        this.unavailable = unavailable;
+        this.hedged = hedged;
+        this.retried = retried;
+        this.coalesced = coalesced;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.cacheEvictions = cacheEvictions;
+    }
+
+    // Copy completed with the counters of the coalescing layer
+    MetricsSnapshot withCoalesced(long coalesced) {
+        return new MetricsSnapshot(providers, unavailable, hedged, retried, coalesced, cacheHits, cacheMisses,
+                cacheEvictions);
+    }
+
+    // Copy completed with the counters of the cache layer
+    MetricsSnapshot withCache(long cacheHits, long cacheMisses, long cacheEvictions) {
+        return new MetricsSnapshot(providers, unavailable, hedged, retried, coalesced, cacheHits, cacheMisses,
+                cacheEvictions);
+    }
+
+    public Map<UUID, ProviderMetricsSnapshot> getProviders() {
+        return providers;
+    }
+
+    public ProviderMetricsSnapshot getProvider(UUID providerUuid) {
+        return providers.get(providerUuid);
+    }
+
+    public long getUnavailable() {
+        return unavailable;
+    }
+
+    public long getHedged() {
+        return hedged;
+    }
+
+    public long getRetried() {
+        return retried;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getCacheEvictions() {
+        return cacheEvictions;
+    }
+
+    // Latency of the requests completed by all the providers
+    public HistogramSnapshot getLatency() {
+        HistogramSnapshot merged = HistogramSnapshot.EMPTY;
+        for (ProviderMetricsSnapshot provider : providers.values()) {
+            merged = merged.merge(provider.getLatency());
+        }
+        return merged;
+    }
+
+    public long getTotalDispatched() {
+        long total = 0;
+        for (ProviderMetricsSnapshot provider : providers.values()) {
+            total += provider.getDispatched();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,77 @@
+package com.iptiq.core;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live request counters and latency histogram of a single provider. Counters are striped (LongAdder) so that
+ * concurrent request threads never contend on a single memory location.
+ */
+class ProviderMetrics {
+
+    private final UUID providerUuid;
+
+    // requests handed over to the provider
+    private final LongAdder dispatched = new LongAdder();
+
+    // requests completed normally
+    private final LongAdder succeeded = new LongAdder();
+
+    // requests completed exceptionally
+    private final LongAdder failed = new LongAdder();
+
+    // requests the provider refused to take
+    private final LongAdder rejected = new LongAdder();
+
+    // latency of the completed requests, from submission to completion
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    ProviderMetrics(UUID providerUuid) {
+        this.providerUuid = providerUuid;
+    }
+
+    void recordDispatched() {
+        dispatched.increment();
+    }
+
+    void recordDispatched(int count) {
+        dispatched.add(count);
+    }
+
+    void recordSuccess() {
+        succeeded.increment();
+    }
+
+    void recordFailure() {
+        failed.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordLatency(long latencyNanos) {
+        latency.record(latencyNanos);
+    }
+
+    UUID getProviderUuid() {
+        return providerUuid;
+    }
+
+    HistogramSnapshot latencyInterval() {
+        return latency.intervalSnapshot();
+    }
+
+    void reset() {
+        dispatched.reset();
+        succeeded.reset();
+        failed.reset();
+        rejected.reset();
+        latency.reset();
+    }
+
+    ProviderMetricsSnapshot snapshot() {
+        return new ProviderMetricsSnapshot(providerUuid, dispatched.sum(), succeeded.sum(), failed.sum(), rejected.sum(),
+                latency.snapshot());
+    }
+}
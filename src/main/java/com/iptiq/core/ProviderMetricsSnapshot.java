@@ -0,0 +1,68 @@
+package com.iptiq.core;
+
+import java.util.UUID;
+
+/**
+ * Immutable point-in-time copy of the request counters and latency histogram of a provider.
+ */
+public final class ProviderMetricsSnapshot {
+
+    private final UUID providerUuid;
+
+    private final long dispatched;
+
+    private final long succeeded;
+
+    private final long failed;
+
+    private final long rejected;
+
+    private final HistogramSnapshot latency;
+
+    ProviderMetricsSnapshot(UUID providerUuid, long dispatched, long succeeded, long failed, long rejected,
+                            HistogramSnapshot latency) {
+        this.providerUuid = providerUuid;
+        this.dispatched = dispatched;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.rejected = rejected;
+        this.latency = latency;
+    }
+
+    public UUID getProviderUuid() {
+        return providerUuid;
+    }
+
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    // Latency of the completed requests, from submission to completion (queue wait included)
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "ProviderMetricsSnapshot{" +
+                "providerUuid=" + providerUuid +
+                ", dispatched=" + dispatched +
+                ", succeeded=" + succeeded +
+                ", failed=" + failed +
+                ", rejected=" + rejected +
+                ", latencyP99=" + latency.getValueAtPercentile(99) +
+                '}';
+    }
+}
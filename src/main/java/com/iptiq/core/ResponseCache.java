@@ -0,0 +1,134 @@
+package com.iptiq.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded cache of responses with a per entry time to live, evicting with a segmented LRU policy.
+ * New entries land in a probation segment and are promoted to the protected segment when read again, so that a scan
+ * of keys read once only churns the probation segment and never evicts the frequently read entries.
+ * Both segments are access ordered maps guarded by this: lookups are short and the cache is meant to save provider
+ * round trips that are orders of magnitude longer.
+ */
+class ResponseCache {
+
+    // Share of the capacity reserved to the entries read at least twice
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final long ttlNanos;
+
+    private final int maxEntries;
+
+    private final int maxProtected;
+
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    ResponseCache(long ttlMillis, int maxEntries) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxProtected = this.maxEntries * PROTECTED_PERCENT / 100;
+    }
+
+    // Cached response of the key, null if absent or expired
+    synchronized String get(String key) {
+        long now = System.nanoTime();
+        Entry entry = protectedSegment.get(key);
+        if (entry == null) {
+            entry = probation.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                promote(key, entry);
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(now)) {
+            probation.remove(key);
+            protectedSegment.remove(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    synchronized void put(String key, String value) {
+        Entry entry = new Entry(value, System.nanoTime() + ttlNanos);
+        if (protectedSegment.containsKey(key)) {
+            protectedSegment.put(key, entry);
+            return;
+        }
+        probation.put(key, entry);
+        if (probation.size() + protectedSegment.size() > maxEntries) {
+            evictEldest(probation.isEmpty() ? protectedSegment : probation);
+        }
+    }
+
+    private void promote(String key, Entry entry) {
+        probation.remove(key);
+        protectedSegment.put(key, entry);
+        if (protectedSegment.size() > maxProtected) {
+            // Least recently read protected entry gets a second chance in probation
+            Iterator<Map.Entry<String, Entry>> eldest = protectedSegment.entrySet().iterator();
+            Map.Entry<String, Entry> demoted = eldest.next();
+            eldest.remove();
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private void evictEldest(LinkedHashMap<String, Entry> segment) {
+        Iterator<Map.Entry<String, Entry>> eldest = segment.entrySet().iterator();
+        eldest.next();
+        eldest.remove();
+        evictions.increment();
+    }
+
+    synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    void resetCounters() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    private static final class Entry {
+
+        private final String value;
+
+        private final long expiresAtNanos;
+
+        private Entry(String value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.iptiq.core;
+
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.ProviderSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Smooth weighted round robin (as used by nginx): every pick, each provider current weight grows by its configured
+ * weight, the highest current weight wins and is lowered by the total weight. Heavy providers get proportionally more
+ * traffic, interleaved with the lighter ones instead of being served in bursts.
+ * Weights are read from the providers on every pick, so weight changes apply immediately.
+ */
+class SmoothWeightedRoundRobin {
+
+    // snapshot the current weights below are indexed against
+    private ProviderSnapshot snapshot = ProviderSnapshot.EMPTY;
+
+    private int[] currentWeights = new int[0];
+
+    synchronized Provider select(ProviderSnapshot providers) {
+        if (providers != snapshot) {
+            remap(providers);
+        }
+
+        int total = 0;
+        int best = -1;
+        for (int i = 0; i < currentWeights.length; i++) {
+            Provider provider = providers.get(i);
+            if (!provider.isAvailable()) {
+                // BUSY providers sit this round out
+                continue;
+            }
+            int weight = provider.getWeight();
+            currentWeights[i] += weight;
+            total += weight;
+            if (best < 0 || currentWeights[i] > currentWeights[best]) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        currentWeights[best] -= total;
+        return providers.get(best);
+    }
+
+    // Carry over the current weights of the providers still present in the new snapshot
+    private void remap(ProviderSnapshot providers) {
+        Map<Provider, Integer> previous = new HashMap<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            previous.put(snapshot.get(i), currentWeights[i]);
+        }
+        int[] remapped = new int[providers.size()];
+        for (int i = 0; i < providers.size(); i++) {
+            remapped[i] = previous.getOrDefault(providers.get(i), 0);
+        }
+        currentWeights = remapped;
+        snapshot = providers;
+    }
+}
@@ -0,0 +1,46 @@
+package com.iptiq.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket bounding extra requests (hedges, retries) to a fraction of the regular traffic.
+ * Every regular request deposits a fraction of a token, every extra request withdraws a full one. The balance is
+ * capped so that a long quiet period does not allow a burst of extra requests. Tokens are accounted in thousandths.
+ */
+class TokenBudget {
+
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+
+    private final long maxBalance;
+
+    private final AtomicLong balance = new AtomicLong();
+
+    TokenBudget(int percent, int maxTokens) {
+        this.deposit = TOKEN * percent / 100;
+        this.maxBalance = TOKEN * maxTokens;
+    }
+
+    void deposit() {
+        deposit(1);
+    }
+
+    void deposit(int requests) {
+        if (balance.get() < maxBalance) {
+            balance.accumulateAndGet(deposit * requests, (current, amount) -> Math.min(maxBalance, current + amount));
+        }
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+}
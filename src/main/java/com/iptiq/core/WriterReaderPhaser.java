@@ -0,0 +1,44 @@
+package com.iptiq.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets a reader swap the data structure written by any number of lock-free writers, then wait until the writers still
+ * working on the previous one are done with it (the algorithm of HdrHistogram's WriterReaderPhaser).
+ * Writers wrap each write between {@link #writerCriticalSectionEnter()} and {@link #writerCriticalSectionExit(long)},
+ * two atomic additions and no lock. The reader swaps the structure, then calls {@link #flipPhase()},
+ * readers being serialized by their caller.
+ */
+class WriterReaderPhaser {
+
+    // Writers entered, its sign telling the current phase: positive for even phases, negative for odd ones
+    private final AtomicLong startEpoch = new AtomicLong();
+
+    // Writers exited, per phase
+    private final AtomicLong evenEndEpoch = new AtomicLong();
+
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    long writerCriticalSectionEnter() {
+        return startEpoch.getAndIncrement();
+    }
+
+    void writerCriticalSectionExit(long criticalValueAtEnter) {
+        (criticalValueAtEnter < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+    }
+
+    // Returns once every writer which entered before the flip has exited, the writers entering afterwards do not wait
+    void flipPhase() {
+        boolean nextPhaseIsEven = startEpoch.get() < 0;
+        long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        // The end epoch of the next phase is reset before any writer of that phase may exit
+        (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+        long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (previousEndEpoch.get() != startValueAtFlip) {
+            // Writers hold the critical section for a few atomic operations only
+            LockSupport.parkNanos(1000);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.iptiq.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * State transition of a provider circuit breaker (CLOSED, OPEN, HALF_OPEN).
+ */
+@Name("com.iptiq.CircuitBreaker")
+@Label("Circuit Breaker State Change")
+@Category({"Load Balancer", "Providers"})
+@StackTrace(false)
+public class CircuitBreakerEvent extends jdk.jfr.Event {
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Previous State")
+    public String previousState;
+
+    @Label("State")
+    public String state;
+
+    @Label("Reason")
+    public String reason;
+
+    public static void commit(String provider, String previousState, String state, String reason) {
+        CircuitBreakerEvent event = new CircuitBreakerEvent();
+        if (event.isEnabled()) {
+            event.provider = provider;
+            event.previousState = previousState;
+            event.state = state;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+}
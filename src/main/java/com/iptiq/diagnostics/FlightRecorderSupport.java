@@ -0,0 +1,22 @@
+package com.iptiq.diagnostics;
+
+/**
+ * Java Flight Recorder lives in its own module, jdk.jfr, which a custom runtime image (jlink) may leave out: the events
+ * of this package are only referenced behind this flag, so that they are never loaded by a JVM without JFR.
+ */
+public final class FlightRecorderSupport {
+
+    public static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecorderSupport() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.iptiq.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Status transition of a provider (OK, BUSY, TEARDOWN).
+ */
+@Name("com.iptiq.ProviderStatus")
+@Label("Provider Status Change")
+@Category({"Load Balancer", "Providers"})
+@StackTrace(false)
+public class ProviderStatusEvent extends jdk.jfr.Event {
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Previous Status")
+    public String previousStatus;
+
+    @Label("Status")
+    public String status;
+
+    public static void commit(String provider, String previousStatus, String status) {
+        ProviderStatusEvent event = new ProviderStatusEvent();
+        if (event.isEnabled()) {
+            event.provider = provider;
+            event.previousStatus = previousStatus;
+            event.status = status;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.iptiq.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Request run by a provider executor, timed from its submission to its completion and split between the time spent
+ * waiting for a worker and the execution itself. Only tasks slower than 10 ms are recorded by default.
+ */
+@Name("com.iptiq.ProviderTask")
+@Label("Provider Task")
+@Category({"Load Balancer", "Requests"})
+@StackTrace(false)
+@Threshold("10 ms")
+public class ProviderTaskEvent extends jdk.jfr.Event {
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Queue Wait")
+    @Description("Time spent waiting for a worker")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWait;
+
+    @Label("Execution Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long executionTime;
+
+    @Label("Failed")
+    public boolean failed;
+
+    /*
+     * Event timing a task submitted now, or null when the event is not enabled in any recording.
+     */
+    public static ProviderTaskEvent submitted(String provider) {
+        ProviderTaskEvent event = new ProviderTaskEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.provider = provider;
+        event.begin();
+        return event;
+    }
+
+    public void completed(long queueWait, long executionTime, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.queueWait = queueWait;
+            this.executionTime = executionTime;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
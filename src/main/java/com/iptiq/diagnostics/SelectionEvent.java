@@ -0,0 +1,31 @@
+package com.iptiq.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Provider selection by the load balancer, timed from the registry snapshot read to the chosen provider.
+ * Only selections slower than 1 ms are recorded by default, the threshold can be lowered in the recording settings.
+ */
+@Name("com.iptiq.Selection")
+@Label("Provider Selection")
+@Category({"Load Balancer", "Requests"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class SelectionEvent extends jdk.jfr.Event {
+
+    @Label("Strategy")
+    public String strategy;
+
+    @Label("Provider")
+    @Description("Chosen provider, null when none was available")
+    public String provider;
+
+    @Label("Candidates")
+    @Description("Providers in the registry snapshot")
+    public int candidates;
+}
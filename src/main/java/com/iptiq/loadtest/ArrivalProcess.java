@@ -0,0 +1,8 @@
+package com.iptiq.loadtest;
+
+public enum ArrivalProcess {
+    // requests evenly spaced at the target rate
+    CONSTANT,
+    // exponentially distributed gaps averaging the target rate, as independent clients would produce
+    POISSON,
+}
@@ -0,0 +1,113 @@
+package com.iptiq.loadtest;
+
+import com.iptiq.core.LatencyHistogram;
+import com.iptiq.core.LoadBalancer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator. Each issuing thread follows its own schedule of intended send times and never waits for
+ * a response: requests go through the non blocking route, and their latency is measured from the intended send
+ * time. When the generator falls behind (GC pause, saturated machine), the delay hence counts in the reported latency
+ * instead of silently lowering the offered load, which is the coordinated omission closed-loop callers suffer from.
+ * Timed out requests count in the latencies too, at no less than the timeout, so that a provider too slow to answer
+ * at all does not vanish from the percentiles. Requests refused right away carry no response time and are only counted.
+ */
+public class LoadGenerator {
+
+    private final LoadBalancer loadBalancer;
+
+    public LoadGenerator(LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
+    public LoadReport run(LoadProfile profile) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        LongAdder sent = new LongAdder();
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder timedOut = new LongAdder();
+        AtomicLong lastCompletion = new AtomicLong();
+        // Requests not recorded yet, each one leaving the set once recorded so that long runs do not accumulate them
+        Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(profile.getTimeoutMillis());
+
+        int threads = Math.max(1, profile.getThreads());
+        // Mean gap between two requests of the same thread
+        double intervalNanos = threads * 1e9 / profile.getRequestsPerSecond();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long end = start + TimeUnit.MILLISECONDS.toNanos(profile.getDurationMillis());
+
+        List<Thread> issuers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            // Threads are phased so that their requests interleave
+            long firstSend = start + (long) (intervalNanos * t / threads);
+            Thread issuer = new Thread(() -> {
+                long intended = firstSend;
+                while (intended < end) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                        continue;
+                    }
+                    long intendedSend = intended;
+                    long actualSend = System.nanoTime();
+                    sent.increment();
+                    CompletableFuture<String> recorded = loadBalancer.getAsync()
+                            .orTimeout(profile.getTimeoutMillis(), TimeUnit.MILLISECONDS)
+                            .whenComplete((value, failure) -> {
+                                long now = System.nanoTime();
+                                lastCompletion.accumulateAndGet(now, Math::max);
+                                if (failure == null) {
+                                    succeeded.increment();
+                                    latency.record(now - intendedSend);
+                                    serviceTime.record(now - actualSend);
+                                    return;
+                                }
+                                failed.increment();
+                                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                                if (cause instanceof TimeoutException) {
+                                    timedOut.increment();
+                                    latency.record(Math.max(now - intendedSend, timeoutNanos));
+                                    serviceTime.record(Math.max(now - actualSend, timeoutNanos));
+                                }
+                            });
+                    pending.add(recorded);
+                    // Registered after the add, so that a request completed right away is removed as well
+                    recorded.whenComplete((value, failure) -> pending.remove(recorded));
+                    intended += nextInterval(profile.getArrivalProcess(), intervalNanos);
+                }
+            }, "load-generator-" + t);
+            issuers.add(issuer);
+            issuer.start();
+        }
+        for (Thread issuer : issuers) {
+            issuer.join();
+        }
+        // Wait for the last responses, bounded by the requests timeout
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).exceptionally(failure -> null).join();
+
+        long elapsed = Math.max(end, lastCompletion.get()) - start;
+        return new LoadReport(profile, sent.sum(), succeeded.sum(), failed.sum(), timedOut.sum(), elapsed,
+                latency.snapshot(), serviceTime.snapshot());
+    }
+
+    private static long nextInterval(ArrivalProcess arrivalProcess, double meanNanos) {
+        if (arrivalProcess == ArrivalProcess.POISSON) {
+            return (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanNanos);
+        }
+        return (long) meanNanos;
+    }
+}
@@ -0,0 +1,66 @@
+package com.iptiq.loadtest;
+
+/**
+ * Open-loop load to apply: requests are issued at the target rate whatever the response times, the way independent
+ * clients behave, instead of waiting for each response before sending the next request.
+ */
+public class LoadProfile {
+
+    // Target arrival rate, in requests per second
+    private int requestsPerSecond = 100;
+
+    private int durationMillis = 1000;
+
+    private ArrivalProcess arrivalProcess = ArrivalProcess.CONSTANT;
+
+    // Threads issuing the requests, each taking an equal share of the rate
+    private int threads = 1;
+
+    // Requests still pending after this timeout are cancelled and counted as failed
+    private int timeoutMillis = 10000;
+
+    public int getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public LoadProfile setRequestsPerSecond(int requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        return this;
+    }
+
+    public int getDurationMillis() {
+        return durationMillis;
+    }
+
+    public LoadProfile setDurationMillis(int durationMillis) {
+        this.durationMillis = durationMillis;
+        return this;
+    }
+
+    public ArrivalProcess getArrivalProcess() {
+        return arrivalProcess;
+    }
+
+    public LoadProfile setArrivalProcess(ArrivalProcess arrivalProcess) {
+        this.arrivalProcess = arrivalProcess;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public LoadProfile setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public LoadProfile setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+}
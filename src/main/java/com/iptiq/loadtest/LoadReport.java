@@ -0,0 +1,90 @@
+package com.iptiq.loadtest;
+
+import com.iptiq.core.HistogramSnapshot;
+
+/**
+ * Outcome of a load run. Latencies are reported twice: measured from the time each request was meant to be sent
+ * (corrected for coordinated omission, what a client experiences), and from the time it was actually sent (service
+ * time, hiding the delay of the requests the generator could not send on time). Both include the timed out requests.
+ */
+public final class LoadReport {
+
+    private final LoadProfile profile;
+
+    private final long sent;
+
+    private final long succeeded;
+
+    private final long failed;
+
+    private final long timedOut;
+
+    private final long elapsedNanos;
+
+    private final HistogramSnapshot latency;
+
+    private final HistogramSnapshot serviceTime;
+
+    LoadReport(LoadProfile profile, long sent, long succeeded, long failed, long timedOut, long elapsedNanos,
+               HistogramSnapshot latency, HistogramSnapshot serviceTime) {
+        this.profile = profile;
+        this.sent = sent;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.timedOut = timedOut;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    // Failed requests which did not complete within the profile timeout, included in the failed ones
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    // Successful responses per second over the run, drain of the last requests included
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0.0 : succeeded * 1e9 / elapsedNanos;
+    }
+
+    // Latency from the intended send time, corrected for coordinated omission
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    // Latency from the actual send time
+    public HistogramSnapshot getServiceTime() {
+        return serviceTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("offered %d req/s (%s, %d threads) for %d ms: sent %d, succeeded %d, failed %d (%d timed out), throughput %.1f req/s%n"
+                        + "  latency      %s%n"
+                        + "  service time %s",
+                profile.getRequestsPerSecond(), profile.getArrivalProcess(), profile.getThreads(), profile.getDurationMillis(),
+                sent, succeeded, failed, timedOut, getThroughput(), percentiles(latency), percentiles(serviceTime));
+    }
+
+    private static String percentiles(HistogramSnapshot histogram) {
+        return String.format("p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMax()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
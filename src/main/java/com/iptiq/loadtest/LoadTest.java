@@ -0,0 +1,62 @@
+package com.iptiq.loadtest;
+
+import com.iptiq.config.ConfigProvider;
+import com.iptiq.core.LoadBalancer;
+import com.iptiq.core.LoadBalancerBuilder;
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.ProviderRegistry;
+import com.iptiq.registry.RegistryOperationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of the configured load balancer over a fleet of simulated providers, at increasing shares of the fleet
+ * capacity. Arguments, all optional: service time (ms), share of long requests (%), long requests service time (ms),
+ * duration of each run (ms), arrival process (CONSTANT or POISSON), issuing threads.
+ */
+public class LoadTest {
+
+    static Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final int[] CAPACITY_PERCENTS = {50, 80, 100, 120};
+
+    public static void main(String[] args) throws InterruptedException, RegistryOperationException {
+        long serviceTimeMillis = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        int longPercent = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        long longServiceTimeMillis = args.length > 2 ? Long.parseLong(args[2]) : 200;
+        int durationMillis = args.length > 3 ? Integer.parseInt(args[3]) : 5000;
+        ArrivalProcess arrivalProcess = args.length > 4 ? ArrivalProcess.valueOf(args[4]) : ArrivalProcess.POISSON;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+
+        LoadBalancer lb = new LoadBalancerBuilder().build();
+        ProviderRegistry registry = lb.getRegistry();
+        int providers = registry.getCurrentConfig().getMaxAllowedRegisteredProviders();
+        SimulatedProvider provider = null;
+        for (int i = 0; i < providers; i++) {
+            provider = new SimulatedProvider(registry, serviceTimeMillis, longServiceTimeMillis, longPercent);
+            registry.registerProvider(provider);
+        }
+        int workers = ConfigProvider.getConfig().getLoadBalancer().getMaxConcurrentWorkersPerProvider();
+        double capacity = providers * workers * 1000.0 / provider.getMeanServiceTimeMillis();
+        logger.info(String.format("%d providers x %d workers, mean service time %.2f ms: fleet capacity %.0f req/s",
+                providers, workers, provider.getMeanServiceTimeMillis(), capacity));
+
+        LoadGenerator generator = new LoadGenerator(lb);
+        for (int percent : CAPACITY_PERCENTS) {
+            LoadProfile profile = new LoadProfile()
+                    .setRequestsPerSecond((int) Math.max(1, capacity * percent / 100))
+                    .setDurationMillis(durationMillis)
+                    .setArrivalProcess(arrivalProcess)
+                    .setThreads(threads);
+            lb.clearMetrics();
+            LoadReport report = generator.run(profile);
+            logger.info(percent + "% of capacity: " + report + System.lineSeparator()
+                    + "  unavailable " + lb.getMetrics().getUnavailable());
+        }
+
+        for (Provider registered : registry.getAvailableServices()) {
+            registered.tearDownService();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.iptiq.loadtest;
+
+import com.iptiq.providers.InMemoryProvider;
+import com.iptiq.providers.ProviderStateListener;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In memory provider taking some time to answer. A share of the requests are long ones, in the manner of the LONG_GET
+ * action, so that the load balancer faces a mixed workload.
+ */
+public class SimulatedProvider extends InMemoryProvider {
+
+    private final long serviceTimeMillis;
+
+    private final long longServiceTimeMillis;
+
+    private final int longPercent;
+
+    public SimulatedProvider(ProviderStateListener providerStateListener, long serviceTimeMillis,
+                             long longServiceTimeMillis, int longPercent) {
+        super(providerStateListener);
+        this.serviceTimeMillis = serviceTimeMillis;
+        this.longServiceTimeMillis = longServiceTimeMillis;
+        this.longPercent = longPercent;
+    }
+
+    @Override
+    public String get() {
+        boolean longRequest = ThreadLocalRandom.current().nextInt(100) < longPercent;
+        try {
+            Thread.sleep(longRequest ? longServiceTimeMillis : serviceTimeMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("request interrupted", e);
+        }
+        return super.get();
+    }
+
+    // Mean time to answer a request
+    double getMeanServiceTimeMillis() {
+        return (serviceTimeMillis * (100 - longPercent) + longServiceTimeMillis * longPercent) / 100.0;
+    }
+}
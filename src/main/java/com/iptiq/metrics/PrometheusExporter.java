@@ -0,0 +1,207 @@
+package com.iptiq.metrics;
+
+import com.iptiq.config.MetricsConfig;
+import com.iptiq.core.HistogramSnapshot;
+import com.iptiq.core.LoadBalancer;
+import com.iptiq.core.MetricsSnapshot;
+import com.iptiq.core.ProviderMetricsSnapshot;
+import com.iptiq.providers.Provider;
+import com.iptiq.providers.ProviderStatus;
+import com.iptiq.registry.CircuitBreakerState;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prometheus endpoint of a load balancer, served by the JDK built-in HTTP server at /metrics.
+ * Metrics are rendered in the background at a fixed period from the load balancer and registry snapshots, and a
+ * scrape only writes the latest rendering: however frequent, scrapes never compete with the request path.
+ */
+public class PrometheusExporter {
+
+    private static Logger logger = LoggerFactory.getLogger(PrometheusExporter.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Latency histogram buckets upper bounds, in seconds
+    private static final double[] LATENCY_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    // Their le labels, plain decimals (0.0005 rather than 5.0E-4) as written by the Prometheus clients
+    private static final String[] LATENCY_BUCKET_LABELS = new String[LATENCY_BUCKETS.length];
+
+    static {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            LATENCY_BUCKET_LABELS[i] = BigDecimal.valueOf(LATENCY_BUCKETS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private final LoadBalancer loadBalancer;
+
+    private final MetricsConfig config;
+
+    private volatile byte[] rendering = new byte[0];
+
+    private HttpServer server;
+
+    private ScheduledExecutorService renderer;
+
+    private ExecutorService httpExecutor;
+
+    public PrometheusExporter(LoadBalancer loadBalancer, MetricsConfig config) {
+        this.loadBalancer = loadBalancer;
+        this.config = config;
+    }
+
+    public synchronized void start() throws IOException {
+        refresh();
+        renderer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renderer.scheduleAtFixedRate(this::refresh, config.getRefreshMillis(), config.getRefreshMillis(), TimeUnit.MILLISECONDS);
+
+        server = HttpServer.create(new InetSocketAddress(config.getPort()), 0);
+        server.createContext("/metrics", this::serve);
+        httpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(httpExecutor);
+        server.start();
+        logger.info("metrics served at http://localhost:" + getPort() + "/metrics");
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            // The server does not own the executor it was given
+            httpExecutor.shutdownNow();
+            renderer.shutdownNow();
+            server = null;
+        }
+    }
+
+    // Bound port, useful when configured with port 0 (any free port)
+    public synchronized int getPort() {
+        return server == null ? config.getPort() : server.getAddress().getPort();
+    }
+
+    private void refresh() {
+        try {
+            rendering = render().getBytes(StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            // Keep serving the previous rendering, and keep the renderer scheduled
+            logger.warn("unable to render metrics: " + e.toString());
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        byte[] body = rendering;
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String render() {
+        MetricsSnapshot metrics = loadBalancer.getMetrics();
+        Map<Provider, CircuitBreakerState> providers = loadBalancer.getRegistry().getCircuitBreakerStates();
+        StringBuilder out = new StringBuilder(4096);
+
+        counter(out, "lb_requests_dispatched_total", "Requests handed over to the provider");
+        metrics.getProviders().values().forEach(p -> sample(out, "lb_requests_dispatched_total", p, p.getDispatched()));
+        counter(out, "lb_requests_succeeded_total", "Requests completed normally");
+        metrics.getProviders().values().forEach(p -> sample(out, "lb_requests_succeeded_total", p, p.getSucceeded()));
+        counter(out, "lb_requests_failed_total", "Requests completed exceptionally");
+        metrics.getProviders().values().forEach(p -> sample(out, "lb_requests_failed_total", p, p.getFailed()));
+        counter(out, "lb_requests_rejected_total", "Requests the provider refused to take");
+        metrics.getProviders().values().forEach(p -> sample(out, "lb_requests_rejected_total", p, p.getRejected()));
+
+        counter(out, "lb_requests_unavailable_total", "Requests refused because no provider was available");
+        out.append("lb_requests_unavailable_total ").append(metrics.getUnavailable()).append('\n');
+        counter(out, "lb_requests_hedged_total", "Duplicate requests sent by hedging");
+        out.append("lb_requests_hedged_total ").append(metrics.getHedged()).append('\n');
+        counter(out, "lb_requests_retried_total", "Requests retried on another provider");
+        out.append("lb_requests_retried_total ").append(metrics.getRetried()).append('\n');
+        counter(out, "lb_requests_coalesced_total", "Keyed requests served by an identical in-flight request");
+        out.append("lb_requests_coalesced_total ").append(metrics.getCoalesced()).append('\n');
+        counter(out, "lb_cache_hits_total", "Keyed requests served from the response cache");
+        out.append("lb_cache_hits_total ").append(metrics.getCacheHits()).append('\n');
+        counter(out, "lb_cache_misses_total", "Keyed requests not found in the response cache");
+        out.append("lb_cache_misses_total ").append(metrics.getCacheMisses()).append('\n');
+        counter(out, "lb_cache_evictions_total", "Responses evicted from the response cache");
+        out.append("lb_cache_evictions_total ").append(metrics.getCacheEvictions()).append('\n');
+
+        gauge(out, "lb_provider_in_flight_requests", "Requests submitted to the provider and not completed yet");
+        providers.keySet().forEach(p -> sample(out, "lb_provider_in_flight_requests", p, p.getOutstandingRequests()));
+        gauge(out, "lb_provider_queued_requests", "Requests waiting for a provider worker");
+        providers.keySet().forEach(p -> sample(out, "lb_provider_queued_requests", p, p.getQueuedRequests()));
+
+        gauge(out, "lb_provider_status", "Current status of the provider, 1 for the current one");
+        providers.keySet().forEach(p -> {
+            ProviderStatus current = p.getStatus();
+            for (ProviderStatus status : ProviderStatus.values()) {
+                out.append("lb_provider_status{provider=\"").append(p.getUuid()).append("\",status=\"").append(status)
+                        .append("\"} ").append(status == current ? 1 : 0).append('\n');
+            }
+        });
+        gauge(out, "lb_provider_circuit_breaker_state", "Current state of the provider circuit breaker, 1 for the current one");
+        providers.forEach((p, current) -> {
+            for (CircuitBreakerState state : CircuitBreakerState.values()) {
+                out.append("lb_provider_circuit_breaker_state{provider=\"").append(p.getUuid()).append("\",state=\"")
+                        .append(state).append("\"} ").append(state == current ? 1 : 0).append('\n');
+            }
+        });
+
+        out.append("# HELP lb_request_latency_seconds Latency of the completed requests, queue wait included\n");
+        out.append("# TYPE lb_request_latency_seconds histogram\n");
+        metrics.getProviders().values().forEach(p -> histogram(out, p.getProviderUuid().toString(), p.getLatency()));
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+    }
+
+    private static void gauge(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static void sample(StringBuilder out, String name, ProviderMetricsSnapshot provider, long value) {
+        out.append(name).append("{provider=\"").append(provider.getProviderUuid()).append("\"} ").append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, Provider provider, long value) {
+        out.append(name).append("{provider=\"").append(provider.getUuid()).append("\"} ").append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String provider, HistogramSnapshot latency) {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            out.append("lb_request_latency_seconds_bucket{provider=\"").append(provider).append("\",le=\"").append(LATENCY_BUCKET_LABELS[i])
+                    .append("\"} ").append(latency.getCountAtOrBelow((long) (LATENCY_BUCKETS[i] * 1e9))).append('\n');
+        }
+        out.append("lb_request_latency_seconds_bucket{provider=\"").append(provider).append("\",le=\"+Inf\"} ")
+                .append(latency.getCount()).append('\n');
+        out.append("lb_request_latency_seconds_sum{provider=\"").append(provider).append("\"} ")
+                .append(latency.getSum() / 1e9).append('\n');
+        out.append("lb_request_latency_seconds_count{provider=\"").append(provider).append("\"} ")
+                .append(latency.getCount()).append('\n');
+    }
+}
@@ -1,24 +1,75 @@
 package com.iptiq.providers;
 
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.ConfigChangeListener;
 import com.iptiq.config.ConfigProvider;
+import com.iptiq.config.LoadBalancerConfig;
+import com.iptiq.diagnostics.FlightRecorderSupport;
+import com.iptiq.diagnostics.ProviderStatusEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public abstract class AbstractProvider implements Provider, TaskExecutionListener {
+public abstract class AbstractProvider implements Provider, TaskExecutionListener, ConfigChangeListener {
 
     private Logger logger = LoggerFactory.getLogger(AbstractProvider.class);
 
-    private ProviderThreadPoolExecutor executor;
+    // Executor serving the requests, either a platform threads pool or virtual threads bounded by permits
+    private final ExecutorService executor;
+
+    // Maximum number of requests served concurrently, follows the configuration reloads
+    private volatile int capacity;
+
+    // Number of outstanding requests a BUSY provider must go down to before being OK again
+    private volatile int lowWatermark;
+
+    // Maximum number of requests waiting for a worker, above which requests are rejected
+    private final int maxQueuedRequests;
+
+    // Reserved lane for health checks, so that probes never queue behind requests nor consume request capacity.
+    // Its single thread only lives while probes are running.
+    private final ThreadPoolExecutor probeExecutor;
 
     private ProviderStateListener providerStateListener;
 
-    protected ProviderStatus status;
+    protected volatile ProviderStatus status;
+
+    private static final VarHandle STATUS;
+
+    static {
+        try {
+            STATUS = MethodHandles.lookup().findVarHandle(AbstractProvider.class, "status", ProviderStatus.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Requests submitted and not completed yet (queued or running)
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+    // Moving average of the request latency
+    private final PeakEwma latencyEwma = new PeakEwma();
+
+    // Optional guard (circuit breaker) consulted for every request
+    private volatile RequestGuard requestGuard;
+
+    // Relative capacity of the provider, defaults to its number of workers
+    private volatile int weight;
 
     // made protected just for the sake of the exercise which requires to use the ID in the get method
     protected final UUID uuid;
@@ -27,35 +78,182 @@ public abstract class AbstractProvider implements Provider, TaskExecutionListene
         this.uuid = uuid;
         this.providerStateListener = providerStateListener;
         status = ProviderStatus.OK;
-        executor = new ProviderThreadPoolExecutor(ConfigProvider.getConfig().getLoadBalancer().getMaxConcurrentWorkersPerProvider(), this);
+        LoadBalancerConfig config = ConfigProvider.getConfig().getLoadBalancer();
+        capacity = config.getMaxConcurrentWorkersPerProvider();
+        maxQueuedRequests = config.getMaxQueuedRequestsPerProvider();
+        lowWatermark = lowWatermark(capacity, config.getBusyLowWatermarkPercent());
+        executor = createExecutor(config.getExecutionMode());
+        weight = capacity;
+        probeExecutor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "probe-" + uuid.toString());
+            thread.setDaemon(true);
+            return thread;
+        });
+        probeExecutor.allowCoreThreadTimeOut(true);
+        ConfigProvider.addChangeListener(this);
+    }
+
+    private static int lowWatermark(int capacity, int busyLowWatermarkPercent) {
+        return Math.min(capacity - 1, capacity * busyLowWatermarkPercent / 100);
+    }
+
+    @Override
+    public void configChanged(ApplicationConfig previous, ApplicationConfig current) {
+        LoadBalancerConfig config = current.getLoadBalancer();
+        if (config.getMaxConcurrentWorkersPerProvider() != capacity) {
+            resize(config.getMaxConcurrentWorkersPerProvider(), config.getBusyLowWatermarkPercent());
+        }
+    }
+
+    // Apply a new concurrency limit to the running provider, the maximum number of queued requests is kept
+    private synchronized void resize(int newCapacity, int busyLowWatermarkPercent) {
+        logger.info("resize " + uuid.toString() + " from " + capacity + " to " + newCapacity + " workers");
+        ((ResizableExecutor) executor).setMaxConcurrency(newCapacity);
+        if (weight == capacity) {
+            // Weight still defaulting to the number of workers
+            weight = newCapacity;
+        }
+        lowWatermark = lowWatermark(newCapacity, busyLowWatermarkPercent);
+        capacity = newCapacity;
+        int outstanding = outstandingRequests.get();
+        if (outstanding >= newCapacity) {
+            switchToBusy();
+        } else if (outstanding <= lowWatermark) {
+            switchStatus(ProviderStatus.BUSY, ProviderStatus.OK);
+        }
+    }
+
+    private ExecutorService createExecutor(ExecutionMode executionMode) {
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            ThreadFactory virtualThreads = VirtualThreadProviderExecutor.virtualThreadFactory("provider-" + uuid.toString() + "-");
+            if (virtualThreads != null) {
+                return new VirtualThreadProviderExecutor(virtualThreads, capacity, uuid, this);
+            }
+            logger.warn("falling back to platform threads for " + uuid.toString());
+        }
+        return new ProviderThreadPoolExecutor(capacity, Math.max(1, maxQueuedRequests), uuid, this);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<ProviderStatus> invokeHealthCheck() {
+        Callable<ProviderStatus> check = (Callable<ProviderStatus>) new ProviderActionFactory(this).getProviderAction(Action.HEALTH_CHECK);
+        CompletableFuture<ProviderStatus> result = new CompletableFuture<>();
+        Future<?> probe = probeExecutor.submit(() -> {
+            try {
+                result.complete(check.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        // A cancelled check (timed out) is interrupted, so that it does not hold the probe lane any longer
+        result.whenComplete((status, failure) -> {
+            if (result.isCancelled()) {
+                probe.cancel(true);
+            }
+        });
+        return result;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public Future invokeProvider(Callable func) {
-        Future invocation = executor.submit(func);
-        if (this.status == ProviderStatus.OK && (executor.getTaskCount() - executor.getCompletedTaskCount()) >= executor.getMaximumPoolSize()) {
-            logger.info("Reached max numbers of connections for " + uuid.toString() + ". switch to busy state");
-            this.status = ProviderStatus.BUSY;
-            providerStateListener.providerStateChanged(this, status);
+        // Admission control: fail fast instead of letting the queue grow without bounds
+        if (outstandingRequests.incrementAndGet() > capacity + maxQueuedRequests) {
+            outstandingRequests.decrementAndGet();
+            throw new ProviderOverloadedException(uuid);
+        }
+        RequestGuard guard = requestGuard;
+        long permit = guard != null ? guard.tryAcquirePermission() : 0L;
+        if (permit == RequestGuard.NOT_PERMITTED) {
+            outstandingRequests.decrementAndGet();
+            throw new RejectedExecutionException("circuit breaker does not permit calls to " + uuid.toString());
+        }
+        // The task carries its permit, so that its outcome is reported against it
+        ProviderTask<?> invocation = new ProviderTask<>(func, uuid, permit);
+        try {
+            executor.execute(invocation);
+        } catch (RejectedExecutionException ree) {
+            outstandingRequests.decrementAndGet();
+            if (guard != null) {
+                // Not run, a trial permit must not be lost
+                guard.releasePermission(permit);
+            }
+            throw ree;
+        }
+        if (outstandingRequests.get() >= capacity) {
+            switchToBusy();
         }
         return invocation;
     }
 
     @Override
-    public void taskCompleted() {
-        if (this.status == ProviderStatus.BUSY) {
-            this.status = ProviderStatus.OK;
-            providerStateListener.providerStateChanged(this, status);
+    public void taskCompleted(long latencyNanos, long executionNanos, long permit, Throwable failure) {
+        int outstanding = outstandingRequests.decrementAndGet();
+        // Queue wait included for balancing, so that a saturated provider looks slower
+        latencyEwma.record(latencyNanos);
+        RequestGuard guard = requestGuard;
+        if (guard != null) {
+            // Queue wait excluded, so that a saturated but healthy provider is not taken out.
+            // cancelled requests tell nothing about the provider health
+            guard.requestCompleted(permit, executionNanos, failure != null && !(failure instanceof CancellationException));
+        }
+        // Hysteresis: back to OK only once the load went down to the low watermark, so that a provider working close
+        // to its capacity does not flap between BUSY and OK
+        if (outstanding <= lowWatermark) {
+            switchStatus(ProviderStatus.BUSY, ProviderStatus.OK);
+        }
+    }
+
+    /*
+     * The load is read before switching, so the requests may all have completed meanwhile: they found the provider
+     * still OK and left it as is. The load is read again once BUSY, otherwise nothing would ever switch it back.
+     */
+    private void switchToBusy() {
+        if (switchStatus(ProviderStatus.OK, ProviderStatus.BUSY) && outstandingRequests.get() <= lowWatermark) {
+            switchStatus(ProviderStatus.BUSY, ProviderStatus.OK);
+        }
+    }
+
+    // Atomic status transition, the listener is notified exactly once per transition
+    private boolean switchStatus(ProviderStatus expected, ProviderStatus newStatus) {
+        if (!STATUS.compareAndSet(this, expected, newStatus)) {
+            return false;
+        }
+        if (newStatus == ProviderStatus.BUSY) {
+            logger.info("Reached max numbers of connections for " + uuid.toString() + ". switch to busy state");
+        }
+        recordTransition(expected, newStatus);
+        providerStateListener.providerStateChanged(this, newStatus);
+        return true;
+    }
+
+    private void recordTransition(ProviderStatus previous, ProviderStatus newStatus) {
+        if (FlightRecorderSupport.AVAILABLE) {
+            ProviderStatusEvent.commit(uuid.toString(), previous.name(), newStatus.name());
         }
     }
 
+    @Override
+    public boolean isAvailable() {
+        return status == ProviderStatus.OK;
+    }
+
+    @Override
+    public ProviderStatus getStatus() {
+        return status;
+    }
+
     @Override
     public boolean tearDownService() {
         logger.info("tear down service : uid=" + uuid.toString());
-        this.status = ProviderStatus.TEARDOWN;
+        ProviderStatus previous = (ProviderStatus) STATUS.getAndSet(this, ProviderStatus.TEARDOWN);
+        recordTransition(previous, ProviderStatus.TEARDOWN);
         providerStateListener.providerStateChanged(this, status);
+        ConfigProvider.removeChangeListener(this);
 
         executor.shutdown();
+        probeExecutor.shutdown();
 
         // Gracefully wait for current executions fo proceed
         try {
@@ -68,6 +266,45 @@ public abstract class AbstractProvider implements Provider, TaskExecutionListene
         return true;
     }
 
+    @Override
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    @Override
+    public int getQueuedRequests() {
+        // Admitted requests beyond the workers wait in the executor queue, or for a permit with virtual threads
+        return Math.max(0, outstandingRequests.get() - capacity);
+    }
+
+    @Override
+    public void setRequestGuard(RequestGuard requestGuard) {
+        this.requestGuard = requestGuard;
+    }
+
+    @Override
+    public double getLatencyEwmaNanos() {
+        return latencyEwma.get();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public void setWeight(int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Provider weight must be strictly positive: " + weight);
+        }
+        this.weight = weight;
+    }
+
     @Override
     public UUID getUuid() {
         return uuid;
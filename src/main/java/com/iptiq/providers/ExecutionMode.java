@@ -0,0 +1,8 @@
+package com.iptiq.providers;
+
+public enum ExecutionMode {
+    // fixed pool of platform threads per provider
+    PLATFORM_THREADS,
+    // one virtual thread per request, concurrency bounded by permits
+    VIRTUAL_THREADS,
+}
@@ -0,0 +1,42 @@
+package com.iptiq.providers;
+
+/**
+ * Peak sensitive exponentially weighted moving average of the provider latency.
+ * A sample above the current average replaces it right away (so degradations are noticed on the first slow response),
+ * lower samples are blended in with a weight depending on the time elapsed since the previous sample.
+ * The value also decays towards zero while no sample is recorded, so that a provider penalized once is eventually
+ * given a new chance.
+ */
+class PeakEwma {
+
+    // Time constant of the moving average
+    private static final double DECAY_NANOS = 10_000_000_000d;
+
+    private double ewmaNanos;
+
+    private long lastUpdateNanos = System.nanoTime();
+
+    // Value published for lock free readers, along with its timestamp
+    private volatile double publishedNanos;
+
+    private volatile long publishedAtNanos = lastUpdateNanos;
+
+    synchronized void record(long latencyNanos) {
+        long now = System.nanoTime();
+        if (latencyNanos > ewmaNanos) {
+            ewmaNanos = latencyNanos;
+        } else {
+            double weight = Math.exp(-(now - lastUpdateNanos) / DECAY_NANOS);
+            ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+        }
+        lastUpdateNanos = now;
+        publishedNanos = ewmaNanos;
+        publishedAtNanos = now;
+    }
+
+    double get() {
+        double value = publishedNanos;
+        long elapsed = System.nanoTime() - publishedAtNanos;
+        return elapsed <= 0 ? value : value * Math.exp(-elapsed / DECAY_NANOS);
+    }
+}
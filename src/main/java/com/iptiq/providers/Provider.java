@@ -2,6 +2,7 @@ package com.iptiq.providers;
 
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 public interface Provider {
@@ -12,9 +13,37 @@ public interface Provider {
 
     ProviderStatus check();
 
+    // Whether the provider currently accepts new requests (OK state)
+    boolean isAvailable();
+
+    ProviderStatus getStatus();
+
     // Invocation Call to
     Future invokeProvider(Callable func);
 
+    // Admission control and outcome recording of the requests
+    void setRequestGuard(RequestGuard requestGuard);
+
+    // Health check invocation, served apart from the requests. Cancelling the returned future interrupts the check.
+    CompletableFuture<ProviderStatus> invokeHealthCheck();
+
+    // Number of requests submitted to the provider and not completed yet
+    int getOutstandingRequests();
+
+    // Number of outstanding requests waiting for a worker
+    int getQueuedRequests();
+
+    // Peak sensitive moving average of the request latency, in nanoseconds
+    double getLatencyEwmaNanos();
+
+    // Number of requests the provider runs concurrently
+    int getCapacity();
+
+    // Relative capacity used by weighted strategies
+    int getWeight();
+
+    void setWeight(int weight);
+
     boolean tearDownService();
 
 }
@@ -0,0 +1,15 @@
+package com.iptiq.providers;
+
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Raised when a provider refuses a request because both its workers and its bounded queue are full.
+ * The request has not been started, so it can safely be sent to another provider.
+ */
+public class ProviderOverloadedException extends RejectedExecutionException {
+
+    public ProviderOverloadedException(UUID providerUuid) {
+        super("provider overloaded: " + providerUuid.toString());
+    }
+}
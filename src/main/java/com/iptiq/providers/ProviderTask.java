@@ -0,0 +1,99 @@
+package com.iptiq.providers;
+
+import com.iptiq.diagnostics.FlightRecorderSupport;
+import com.iptiq.diagnostics.ProviderTaskEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Task submitted to a provider executor, stamped with its submission time so that the end to end latency
+ * (queue wait included) can be measured once it completes, and with its start time to tell the queue wait apart.
+ */
+class ProviderTask<V> extends FutureTask<V> {
+
+    private static Logger logger = LoggerFactory.getLogger(ProviderTask.class);
+
+    private final long submitNanos;
+
+    // Permit the request guard admitted the task with, 0 when no guard was set
+    private final long permit;
+
+    // Set by the worker running the task, which is also the one reporting its completion
+    private long startNanos;
+
+    // Flight recorder event of the task, null when JFR is not supported or the event is not recorded
+    private final ProviderTaskEvent event;
+
+    ProviderTask(Callable<V> callable, UUID providerUuid) {
+        this(callable, providerUuid, 0L);
+    }
+
+    ProviderTask(Callable<V> callable, UUID providerUuid, long permit) {
+        super(callable);
+        this.submitNanos = System.nanoTime();
+        this.permit = permit;
+        this.event = FlightRecorderSupport.AVAILABLE ? ProviderTaskEvent.submitted(providerUuid.toString()) : null;
+    }
+
+    ProviderTask(Runnable runnable, V result, UUID providerUuid) {
+        super(runnable, result);
+        this.submitNanos = System.nanoTime();
+        this.permit = 0L;
+        this.event = FlightRecorderSupport.AVAILABLE ? ProviderTaskEvent.submitted(providerUuid.toString()) : null;
+    }
+
+    long getSubmitNanos() {
+        return submitNanos;
+    }
+
+    @Override
+    public void run() {
+        startNanos = System.nanoTime();
+        super.run();
+    }
+
+    /*
+     * Report a task the executor is done with to the listener, along with its latency, execution time, permit and failure if any.
+     * Shared by the provider executors, whatever the threads they run on.
+     */
+    static void completed(Runnable r, Throwable t, TaskExecutionListener taskListener) {
+        if (t == null && r instanceof java.util.concurrent.Future<?>) {
+            try {
+                ((Future<?>) r).get();
+            } catch (CancellationException ce) {
+                t = ce;
+            } catch (ExecutionException ee) {
+                t = ee.getCause();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long latencyNanos = 0L;
+        long executionNanos = 0L;
+        long permit = 0L;
+        if (r instanceof ProviderTask) {
+            ProviderTask<?> task = (ProviderTask<?>) r;
+            long nowNanos = System.nanoTime();
+            // A task cancelled before a worker picked it up only waited
+            long startNanos = task.startNanos != 0L ? task.startNanos : nowNanos;
+            latencyNanos = nowNanos - task.submitNanos;
+            executionNanos = nowNanos - startNanos;
+            permit = task.permit;
+            if (task.event != null) {
+                task.event.completed(startNanos - task.submitNanos, executionNanos, t != null);
+            }
+        }
+        taskListener.taskCompleted(latencyNanos, executionNanos, permit, t);
+        // The failure surfaces through the task future, or is retried by the load balancer
+        if (t != null && !(t instanceof CancellationException)) {
+            logger.debug("provider task failed", t);
+        }
+    }
+}
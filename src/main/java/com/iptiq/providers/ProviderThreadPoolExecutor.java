@@ -1,31 +1,49 @@
 package com.iptiq.providers;
 
+import java.util.UUID;
 import java.util.concurrent.*;
 
-class ProviderThreadPoolExecutor extends ThreadPoolExecutor {
+class ProviderThreadPoolExecutor extends ThreadPoolExecutor implements ResizableExecutor {
+
+    private final UUID providerUuid;
 
     private TaskExecutionListener taskListener;
 
-    public ProviderThreadPoolExecutor(int poolSize, TaskExecutionListener taskListener) {
-        super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+    public ProviderThreadPoolExecutor(int poolSize, int queueCapacity, UUID providerUuid, TaskExecutionListener taskListener) {
+        super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity), (r, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("provider shut down: " + providerUuid.toString());
+            }
+            throw new ProviderOverloadedException(providerUuid);
+        });
+        this.providerUuid = providerUuid;
         this.taskListener = taskListener;
     }
 
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new ProviderTask<>(callable, providerUuid);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new ProviderTask<>(runnable, value, providerUuid);
+    }
+
+    @Override
+    public void setMaxConcurrency(int poolSize) {
+        // The core size can never exceed the maximum one, hence the order
+        if (poolSize > getMaximumPoolSize()) {
+            setMaximumPoolSize(poolSize);
+            setCorePoolSize(poolSize);
+        } else {
+            setCorePoolSize(poolSize);
+            setMaximumPoolSize(poolSize);
+        }
+    }
+
     protected void afterExecute(Runnable r, Throwable t) {
         super.afterExecute(r, t);
-        if (t == null && r instanceof Future<?>) {
-            try {
-                ((Future<?>) r).get();
-            } catch (CancellationException ce) {
-                t = ce;
-            } catch (ExecutionException ee) {
-                t = ee.getCause();
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-            taskListener.taskCompleted();
-        }
-        if (t != null)
-            t.printStackTrace();
+        ProviderTask.completed(r, t, taskListener);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.iptiq.providers;
+
+/**
+ * Guards the requests sent to a provider: decides whether a new request may be admitted and is told about the
+ * outcome of every completed one.
+ */
+public interface RequestGuard {
+
+    // Returned instead of a permit when the request is not admitted
+    long NOT_PERMITTED = -1L;
+
+    // Permit of the admitted request, handed back with its outcome, or NOT_PERMITTED. Permits are positive.
+    long tryAcquirePermission();
+
+    // Gives back the permit of a request which was rejected before being run
+    void releasePermission(long permit);
+
+    // Execution time of the request, the time it waited for a worker is not the provider's doing
+    void requestCompleted(long permit, long executionNanos, boolean failed);
+}
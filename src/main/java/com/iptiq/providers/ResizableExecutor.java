@@ -0,0 +1,12 @@
+package com.iptiq.providers;
+
+/**
+ * Provider executor which concurrency limit can be changed while it runs.
+ */
+interface ResizableExecutor {
+
+    /*
+     * Lowering the limit does not interrupt the running tasks, the executor goes down to it as they complete.
+     */
+    void setMaxConcurrency(int maxConcurrency);
+}
@@ -2,6 +2,8 @@ package com.iptiq.providers;
 
 public interface TaskExecutionListener {
 
-    void taskCompleted();
+    // latency measured from task submission to completion, execution time from its start (queue wait excluded),
+    // permit the task was admitted with by the request guard, failure is null when the task completed normally
+    void taskCompleted(long latencyNanos, long executionNanos, long permit, Throwable failure);
 
 }
@@ -0,0 +1,169 @@
+package com.iptiq.providers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider executor starting one virtual thread per task. Concurrency is bounded by a number of permits instead of a
+ * pool size: tasks beyond the limit wait on the semaphore, parked at the cost of a virtual thread only.
+ */
+class VirtualThreadProviderExecutor extends AbstractExecutorService implements ResizableExecutor {
+
+    private static Logger logger = LoggerFactory.getLogger(VirtualThreadProviderExecutor.class);
+
+    private final ThreadFactory threadFactory;
+
+    private final Permits permits;
+
+    // Current number of permits, guarded by permits
+    private int maxConcurrency;
+
+    private final UUID providerUuid;
+
+    private final TaskExecutionListener taskListener;
+
+    // Number of started and not finished tasks, guarded by this
+    private int runningTasks;
+
+    private volatile boolean shutdown;
+
+    VirtualThreadProviderExecutor(ThreadFactory threadFactory, int maxConcurrency, UUID providerUuid, TaskExecutionListener taskListener) {
+        this.threadFactory = threadFactory;
+        this.permits = new Permits(maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        this.providerUuid = providerUuid;
+        this.taskListener = taskListener;
+    }
+
+    /**
+     * Virtual threads factory, or null when the running JVM does not support them (before Java 21).
+     * Looked up reflectively so that the code base still compiles on older JDKs.
+     */
+    static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("virtual threads are not supported by this JVM: " + e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void setMaxConcurrency(int maxConcurrency) {
+        synchronized (permits) {
+            int delta = maxConcurrency - this.maxConcurrency;
+            this.maxConcurrency = maxConcurrency;
+            if (delta > 0) {
+                permits.release(delta);
+            } else if (delta < 0) {
+                // Permits held by running tasks are taken back as they are released
+                permits.reducePermits(-delta);
+            }
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new ProviderTask<>(callable, providerUuid);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new ProviderTask<>(runnable, value, providerUuid);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("executor shut down");
+            }
+            runningTasks++;
+        }
+        threadFactory.newThread(() -> run(task)).start();
+    }
+
+    private void run(Runnable task) {
+        Throwable failure = null;
+        try {
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                permits.release();
+            }
+            ProviderTask.completed(task, failure, taskListener);
+        } finally {
+            synchronized (this) {
+                runningTasks--;
+                if (runningTasks == 0) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        // Tasks are never queued, only already started ones remain and they are left to complete
+        shutdown = true;
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && runningTasks == 0;
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            wait(remainingMillis);
+        }
+        return true;
+    }
+
+    // Semaphore which number of permits can be lowered, reducePermits being protected
+    private static class Permits extends Semaphore {
+
+        Permits(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.iptiq.registry;
+
+import com.iptiq.config.CircuitBreakerConfig;
+import com.iptiq.diagnostics.CircuitBreakerEvent;
+import com.iptiq.diagnostics.FlightRecorderSupport;
+import com.iptiq.providers.Provider;
+import com.iptiq.providers.RequestGuard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker of a provider, fed by both the health checks and the outcome of the real requests.
+ * <ul>
+ * <li>CLOSED: requests outcomes are recorded in a sliding window, the circuit opens once the failure rate or the slow
+ * call rate crosses its threshold.</li>
+ * <li>OPEN: provider is removed from the registry, only health checks reach it.</li>
+ * <li>HALF_OPEN: after successful health checks, the provider is back in the registry but only a limited number of
+ * trial requests are admitted. Their outcome decides whether the circuit closes or opens again.</li>
+ * </ul>
+ */
+class CircuitBreaker implements RequestGuard {
+
+    private Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final ProviderRegistry registry;
+
+    private final Provider provider;
+
+    private final CircuitBreakerConfig config;
+
+    private final long slowCallNanos;
+
+    // Current state, replaced on every transition
+    private final AtomicReference<Phase> phase = new AtomicReference<>(new Phase(CircuitBreakerState.CLOSED, 1L, 0));
+
+    private final OutcomeWindow window;
+
+    CircuitBreaker(ProviderRegistry registry, Provider provider, CircuitBreakerConfig config) {
+        this.registry = registry;
+        this.provider = provider;
+        this.config = config;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMillis());
+        this.window = new OutcomeWindow(config.getSlidingWindowSize());
+    }
+
+    CircuitBreakerState getState() {
+        return phase.get().state;
+    }
+
+    @Override
+    public long tryAcquirePermission() {
+        Phase current = phase.get();
+        switch (current.state) {
+            case CLOSED:
+                return current.generation;
+            case HALF_OPEN:
+                return current.permits.tryAcquire() ? current.generation : NOT_PERMITTED;
+            default:
+                return NOT_PERMITTED;
+        }
+    }
+
+    @Override
+    public void releasePermission(long permit) {
+        Phase current = phase.get();
+        if (current.generation == permit && current.state == CircuitBreakerState.HALF_OPEN) {
+            current.permits.release();
+        }
+    }
+
+    @Override
+    public void requestCompleted(long permit, long executionNanos, boolean failed) {
+        Phase current = phase.get();
+        if (current.generation != permit) {
+            // late completion of a request admitted before the last transition, e.g. before the circuit opened
+            return;
+        }
+        boolean slow = executionNanos >= slowCallNanos;
+        switch (current.state) {
+            case CLOSED: {
+                window.record(failed, slow);
+                if (window.getCalls() >= config.getMinimumNumberOfCalls()
+                        && exceedsThresholds(window.getFailureRate(), window.getSlowCallRate())) {
+                    open(current, "failure rate " + window.getFailureRate() + "%, slow call rate " + window.getSlowCallRate() + "%");
+                }
+                break;
+            }
+            case HALF_OPEN: {
+                if (failed) {
+                    current.failedCalls.incrementAndGet();
+                }
+                if (slow) {
+                    current.slowCalls.incrementAndGet();
+                }
+                int calls = current.calls.incrementAndGet();
+                if (calls == config.getPermittedCallsInHalfOpenState()) {
+                    int failureRate = current.failedCalls.get() * 100 / calls;
+                    int slowCallRate = current.slowCalls.get() * 100 / calls;
+                    if (exceedsThresholds(failureRate, slowCallRate)) {
+                        open(current, "trial requests failure rate " + failureRate + "%, slow call rate " + slowCallRate + "%");
+                    } else {
+                        close(current);
+                    }
+                }
+                break;
+            }
+            default:
+        }
+    }
+
+    private boolean exceedsThresholds(int failureRate, int slowCallRate) {
+        return failureRate >= config.getFailureRateThreshold() || slowCallRate >= config.getSlowCallRateThreshold();
+    }
+
+    void open(String reason) {
+        Phase current = phase.get();
+        while (current.state != CircuitBreakerState.OPEN && !open(current, reason)) {
+            current = phase.get();
+        }
+    }
+
+    // Opens the circuit from the given phase, false if another transition happened meanwhile
+    private boolean open(Phase expected, String reason) {
+        if (!phase.compareAndSet(expected, expected.next(CircuitBreakerState.OPEN, 0))) {
+            return false;
+        }
+        logger.info("open circuit breaker for " + provider.getUuid().toString() + ": " + reason);
+        recordTransition(expected.state, CircuitBreakerState.OPEN, reason);
+        registry.deregisterProvider(provider);
+        return true;
+    }
+
+    void halfOpen() throws RegistryOperationException {
+        Phase current = phase.get();
+        if (current.state == CircuitBreakerState.OPEN
+                && phase.compareAndSet(current, current.next(CircuitBreakerState.HALF_OPEN, config.getPermittedCallsInHalfOpenState()))) {
+            logger.info("half open circuit breaker for " + provider.getUuid().toString());
+            recordTransition(CircuitBreakerState.OPEN, CircuitBreakerState.HALF_OPEN, "successful health checks");
+            registry.registerProvider(provider);
+        }
+    }
+
+    private void close(Phase expected) {
+        if (phase.compareAndSet(expected, expected.next(CircuitBreakerState.CLOSED, 0))) {
+            window.reset();
+            logger.info("close circuit breaker for " + provider.getUuid().toString());
+            recordTransition(CircuitBreakerState.HALF_OPEN, CircuitBreakerState.CLOSED, "successful trial requests");
+        }
+    }
+
+    private void recordTransition(CircuitBreakerState previous, CircuitBreakerState newState, String reason) {
+        if (FlightRecorderSupport.AVAILABLE) {
+            CircuitBreakerEvent.commit(provider.getUuid().toString(), previous.name(), newState.name(), reason);
+        }
+    }
+
+    /*
+     * State of the circuit along with its generation, which stamps the permits: outcomes of requests admitted in an
+     * earlier phase are not mistaken for the current phase ones. Trial permits and outcomes are counted per phase.
+     */
+    private static final class Phase {
+
+        private final CircuitBreakerState state;
+
+        private final long generation;
+
+        private final Semaphore permits;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final AtomicInteger failedCalls = new AtomicInteger();
+
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        Phase(CircuitBreakerState state, long generation, int permits) {
+            this.state = state;
+            this.generation = generation;
+            this.permits = new Semaphore(permits);
+        }
+
+        Phase next(CircuitBreakerState newState, int permits) {
+            return new Phase(newState, generation + 1, permits);
+        }
+    }
+}
@@ -2,5 +2,6 @@ package com.iptiq.registry;
 
 public enum CircuitBreakerState {
     OPEN,
+    HALF_OPEN,
     CLOSED,
 }
@@ -1,32 +1,52 @@
 package com.iptiq.registry;
 
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.ConfigChangeListener;
+import com.iptiq.config.ConfigProvider;
 import com.iptiq.config.RegistryConfig;
 import com.iptiq.providers.Provider;
 import com.iptiq.providers.ProviderStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class InMemoryProviderRegistry implements ProviderRegistry {
+public class InMemoryProviderRegistry implements ProviderRegistry, ConfigChangeListener {
 
     private Logger logger = LoggerFactory.getLogger(InMemoryProviderRegistry.class);
 
-    // Executor service holding the threads doing the checks
-    private final ExecutorService checkThreadPool = Executors.newCachedThreadPool();
+    // Scheduler shared by the health checks of all the providers
+    private final ScheduledExecutorService checkScheduler;
 
-    private final List<Provider> availableProviders;
+    // Exactly one health check per known provider, kept while its circuit breaker is open
+    private final Map<Provider, ProviderHealthChecker> healthCheckers = new ConcurrentHashMap<>();
 
-    // reference to global provider registry configuration.
-    private final RegistryConfig registryConfig;
+    // Copy-on-write snapshot of the providers in rotation (registered, circuit not open). Writers serialize on the
+    // registry monitor, readers (request path) only perform a volatile read. Whether a provider is BUSY is not part of
+    // the snapshot, it is read from the provider itself.
+    private volatile ProviderSnapshot availableProviders = ProviderSnapshot.EMPTY;
+
+    // reference to global provider registry configuration, replaced on configuration reload.
+    private volatile RegistryConfig registryConfig;
+
+    private final List<ProviderRegistryListener> listeners = new CopyOnWriteArrayList<>();
 
     public InMemoryProviderRegistry(RegistryConfig registryConfig) {
         this.registryConfig = registryConfig;
-        this.availableProviders = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.checkScheduler = Executors.newScheduledThreadPool(Math.max(1, registryConfig.getHealthCheckThreads()), r -> {
+            Thread thread = new Thread(r, "health-check-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ConfigProvider.addChangeListener(this);
     }
 
     @Override
@@ -39,20 +59,46 @@ public class InMemoryProviderRegistry implements ProviderRegistry {
             throw new RegistryOperationException("Provider already registered");
         }
 
-        availableProviders.add(provider);
+        availableProviders = availableProviders.withAdded(provider);
+        for (ProviderRegistryListener listener : listeners) {
+            listener.providerRegistered(provider);
+        }
 
-        new ProviderHealthChecker(checkThreadPool, this, provider).start();
+        healthCheckers.computeIfAbsent(provider, p -> {
+            ProviderHealthChecker checker = new ProviderHealthChecker(checkScheduler, this, p);
+            checker.start();
+            return checker;
+        });
     }
 
     @Override
     public synchronized void deregisterProvider(Provider provider) {
-        availableProviders.remove(provider);
+        ProviderSnapshot previous = availableProviders;
+        availableProviders = previous.withRemoved(provider);
+        if (availableProviders != previous) {
+            for (ProviderRegistryListener listener : listeners) {
+                listener.providerDeregistered(provider);
+            }
+        }
     }
 
     @Override
     public List<Provider> getAvailableServices() {
-        // expose immutable list to prevent any kind of external abuse
-        return Collections.unmodifiableList(availableProviders);
+        // expose immutable list to prevent any kind of external abuse. A consistent copy of the providers at the time of
+        // the call, call again for fresh data.
+        return availableProviders.asList();
+    }
+
+    @Override
+    public ProviderSnapshot getAvailableSnapshot() {
+        return availableProviders;
+    }
+
+    @Override
+    public Map<Provider, CircuitBreakerState> getCircuitBreakerStates() {
+        Map<Provider, CircuitBreakerState> states = new HashMap<>();
+        healthCheckers.forEach((provider, checker) -> states.put(provider, checker.getCircuitBreakerState()));
+        return states;
     }
 
     @Override
@@ -60,15 +106,36 @@ public class InMemoryProviderRegistry implements ProviderRegistry {
         return registryConfig;
     }
 
+    @Override
+    public void configChanged(ApplicationConfig previous, ApplicationConfig current) {
+        // Follow the reloaded configuration only when created from the global one. The health checks pick up the new
+        // frequency and timeout from their next run.
+        if (previous != null && registryConfig == previous.getRegistry()) {
+            registryConfig = current.getRegistry();
+        }
+    }
+
+    // Number of providers currently health checked
+    int getHealthCheckersCount() {
+        return healthCheckers.size();
+    }
+
+    @Override
+    public void addRegistryListener(ProviderRegistryListener listener) {
+        listeners.add(listener);
+    }
+
     @Override
     public void providerStateChanged(Provider provider, ProviderStatus newStatus) {
-        if (newStatus == ProviderStatus.BUSY || newStatus == ProviderStatus.TEARDOWN) {
+        if (newStatus == ProviderStatus.TEARDOWN) {
+            ProviderHealthChecker checker = healthCheckers.remove(provider);
+            if (checker != null) {
+                checker.stop();
+            }
             deregisterProvider(provider);
             return;
         }
-        if (newStatus == ProviderStatus.OK) {
-            availableProviders.add(provider);
-            return;
-        }
+        // BUSY / OK flips need no registry update: providers stay in the snapshot and the load balancer skips the ones
+        // not available at selection time.
     }
 }
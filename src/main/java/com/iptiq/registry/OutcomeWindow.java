@@ -0,0 +1,72 @@
+package com.iptiq.registry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free, count based sliding window over the outcomes of the last requests of a provider.
+ * Each record overwrites the oldest slot of a ring buffer and adjusts the running counters accordingly.
+ */
+class OutcomeWindow {
+
+    private static final int RECORDED = 1;
+    private static final int FAILED = 2;
+    private static final int SLOW = 4;
+
+    private final AtomicIntegerArray outcomes;
+
+    private final AtomicLong cursor = new AtomicLong();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger failedCalls = new AtomicInteger();
+
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    OutcomeWindow(int size) {
+        this.outcomes = new AtomicIntegerArray(Math.max(1, size));
+    }
+
+    void record(boolean failed, boolean slow) {
+        int outcome = RECORDED | (failed ? FAILED : 0) | (slow ? SLOW : 0);
+        int slot = (int) (cursor.getAndIncrement() % outcomes.length());
+        int evicted = outcomes.getAndSet(slot, outcome);
+        count(evicted, -1);
+        count(outcome, 1);
+    }
+
+    private void count(int outcome, int delta) {
+        if ((outcome & RECORDED) != 0) {
+            calls.addAndGet(delta);
+        }
+        if ((outcome & FAILED) != 0) {
+            failedCalls.addAndGet(delta);
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls.addAndGet(delta);
+        }
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    // percentage of failed calls in the window
+    int getFailureRate() {
+        int total = calls.get();
+        return total == 0 ? 0 : failedCalls.get() * 100 / total;
+    }
+
+    // percentage of slow calls in the window
+    int getSlowCallRate() {
+        int total = calls.get();
+        return total == 0 ? 0 : slowCalls.get() * 100 / total;
+    }
+
+    void reset() {
+        for (int i = 0; i < outcomes.length(); i++) {
+            count(outcomes.getAndSet(i, 0), -1);
+        }
+    }
+}
@@ -1,27 +1,34 @@
 package com.iptiq.registry;
 
-import com.iptiq.providers.Action;
+import com.iptiq.config.RegistryConfig;
 import com.iptiq.providers.Provider;
-import com.iptiq.providers.ProviderActionFactory;
 import com.iptiq.providers.ProviderStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
- * ProviderHealthChecker implements a simple circuit breaker pattern for providers healths checks.
- * It unregisters any faulty provider instance from the load balancer registry.
+ * ProviderHealthChecker drives the circuit breaker of a provider from its health checks.
+ * A failed check opens the circuit (unregistering the provider), two consecutive successful checks half open it.
+ * Checks do not own a thread: each run performs a single check and schedules the next one on the registry shared
+ * scheduler, with some jitter so that checks of providers registered together do not stay in lockstep.
  */
 public class ProviderHealthChecker implements Runnable {
 
     private Logger logger = LoggerFactory.getLogger(ProviderHealthChecker.class);
 
-    // Executor service holding the threads doing the checks
-    private final ExecutorService checkThreadPool;
+    // Maximum deviation applied to the check interval, as a fraction of it
+    private static final double JITTER_RATIO = 0.1;
+
+    // Scheduler shared by all the checks of the registry
+    private final ScheduledExecutorService checkScheduler;
 
     // the Provider this health check should take care of.
     private final Provider provider;
@@ -29,75 +36,124 @@ public class ProviderHealthChecker implements Runnable {
     // the Registry this health check should take ba attached with
     private final ProviderRegistry registry;
 
-    // Gap in milliseconds between two health check calls.
-    private final int healthCheckFrequencyMillis;
+    // Circuit breaker of the provider, also fed by the outcome of the requests
+    private final CircuitBreaker circuitBreaker;
 
-    // Gap in milliseconds between two health check calls.
-    private final int healthCheckRequestTimeoutMillis;
+    private int consecutiveSuccessesChecks;
 
-    // Circuit breaker state
-    private CircuitBreakerState cbState;
+    private volatile boolean stopped;
 
 
-    public ProviderHealthChecker(ExecutorService checkThreadPool, ProviderRegistry registry, Provider provider) {
-        this.checkThreadPool = checkThreadPool;
+    public ProviderHealthChecker(ScheduledExecutorService checkScheduler, ProviderRegistry registry, Provider provider) {
+        this.checkScheduler = checkScheduler;
         this.registry = registry;
         this.provider = provider;
-        this.cbState = CircuitBreakerState.CLOSED;
-        this.healthCheckFrequencyMillis = registry.getCurrentConfig().getHealthCheckFrequencyMillis();
-        this.healthCheckRequestTimeoutMillis = registry.getCurrentConfig().getHealthCheckRequestTimeoutMillis();
+        this.circuitBreaker = new CircuitBreaker(registry, provider, registry.getCurrentConfig().getCircuitBreaker());
+        provider.setRequestGuard(circuitBreaker);
     }
 
     public void start() {
-        this.checkThreadPool.submit(this);
+        // Random first delay spreads the checks of providers registered at the same time
+        scheduleNext(ThreadLocalRandom.current().nextLong(registry.getCurrentConfig().getHealthCheckFrequencyMillis() + 1L));
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public CircuitBreakerState getCircuitBreakerState() {
+        return circuitBreaker.getState();
     }
 
     @Override
     public void run() {
-        int consecutiveSuccessesChecks = 0;
-        while (!Thread.interrupted()) {
-            ProviderStatus status = ProviderStatus.OUT_OF_SERVICE;
-            try {
-                status = (ProviderStatus) provider.invokeProvider(new ProviderActionFactory(provider)
-                        .getProviderAction(Action.HEALTH_CHECK))
-                        .get(healthCheckRequestTimeoutMillis, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                logger.warn("unable to reach check endpoint. timeout after " + healthCheckRequestTimeoutMillis + " ms");
-            }
+        if (stopped) {
+            return;
+        }
+        // Frequency and timeout are read on every check, so that a configuration reload applies to the next one
+        RegistryConfig config = registry.getCurrentConfig();
+        int healthCheckRequestTimeoutMillis = config.getHealthCheckRequestTimeoutMillis();
+        CompletableFuture<ProviderStatus> check;
+        try {
+            check = provider.invokeHealthCheck();
+        } catch (RejectedExecutionException e) {
+            checkCompleted(config, null, e);
+            return;
+        }
+        // The check is not waited for: a hung provider must not hold a scheduler thread shared by all the checks.
+        // On timeout the check is cancelled, which interrupts it and frees the provider probe lane.
+        ScheduledFuture<?> timeout;
+        try {
+            timeout = checkScheduler.schedule(() -> check.cancel(true), healthCheckRequestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ree) {
+            // scheduler shut down, nothing left to check
+            check.cancel(true);
+            stopped = true;
+            return;
+        }
+        check.whenCompleteAsync((status, failure) -> {
+            timeout.cancel(false);
+            checkCompleted(config, status, failure);
+        }, checkScheduler);
+    }
 
-            if (status != ProviderStatus.OK && status != ProviderStatus.BUSY) {
-                if (status == ProviderStatus.TEARDOWN) {
-                    // stop health checks
-                    Thread.currentThread().interrupt();
-                    continue;
-                }
-                consecutiveSuccessesChecks = 0;
-                if (cbState == CircuitBreakerState.CLOSED) {
-                    logger.info("open circuit breaker for " + provider.getUuid().toString());
-                    cbState = CircuitBreakerState.OPEN;
-                    this.registry.deregisterProvider(provider);
-                }
-            } else {
-                if (cbState == CircuitBreakerState.OPEN) {
-                    consecutiveSuccessesChecks++;
-                    if (consecutiveSuccessesChecks >= 2) {
-                        cbState = CircuitBreakerState.CLOSED;
-                        logger.info("close circuit breaker for " + provider.getUuid().toString());
-                        try {
-                            this.registry.registerProvider(provider);
-                        } catch (RegistryOperationException roe) {
-                            logger.warn("Unable to re-register instance after successful circuit breaker checks: ", roe.toString());
-                            provider.tearDownService();
-                            return;
-                        }
-                    }
+    private void checkCompleted(RegistryConfig config, ProviderStatus status, Throwable failure) {
+        try {
+            if (failure != null) {
+                if (failure instanceof CancellationException) {
+                    logger.warn("unable to reach check endpoint. timeout after " + config.getHealthCheckRequestTimeoutMillis() + " ms");
+                } else {
+                    logger.warn("unable to reach check endpoint: " + failure.toString());
                 }
+                status = ProviderStatus.OUT_OF_SERVICE;
             }
-            try {
-                Thread.sleep(healthCheckFrequencyMillis);
-            } catch (InterruptedException e) {
+            evaluate(status);
+        } finally {
+            // Rescheduled whatever the outcome, unless the checks were stopped
+            scheduleNext(jitteredDelay(config.getHealthCheckFrequencyMillis()));
+        }
+    }
+
+    private void evaluate(ProviderStatus status) {
+        if (status != ProviderStatus.OK && status != ProviderStatus.BUSY) {
+            if (status == ProviderStatus.TEARDOWN) {
+                // stop health checks
+                stop();
                 return;
             }
+            consecutiveSuccessesChecks = 0;
+            circuitBreaker.open("health check failed");
+        } else {
+            if (circuitBreaker.getState() == CircuitBreakerState.OPEN) {
+                consecutiveSuccessesChecks++;
+                if (consecutiveSuccessesChecks >= 2) {
+                    consecutiveSuccessesChecks = 0;
+                    try {
+                        circuitBreaker.halfOpen();
+                    } catch (RegistryOperationException roe) {
+                        logger.warn("Unable to re-register instance after successful circuit breaker checks: ", roe.toString());
+                        stop();
+                        provider.tearDownService();
+                    }
+                }
+            }
+        }
+    }
+
+    private static long jitteredDelay(int healthCheckFrequencyMillis) {
+        long jitter = (long) (healthCheckFrequencyMillis * JITTER_RATIO);
+        return healthCheckFrequencyMillis + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+    }
+
+    private void scheduleNext(long delayMillis) {
+        if (stopped) {
+            return;
+        }
+        try {
+            checkScheduler.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ree) {
+            // scheduler shut down, nothing left to check
+            stopped = true;
         }
     }
 }
@@ -5,14 +5,31 @@ import com.iptiq.providers.Provider;
 import com.iptiq.providers.ProviderStateListener;
 
 import java.util.List;
+import java.util.Map;
 
 public interface ProviderRegistry extends ProviderStateListener {
 
     void registerProvider(Provider provider) throws RegistryOperationException;
 
+    // Register a provider with an explicit weight instead of its default capacity
+    default void registerProvider(Provider provider, int weight) throws RegistryOperationException {
+        provider.setWeight(weight);
+        registerProvider(provider);
+    }
+
     void deregisterProvider(Provider provider);
 
+    // Providers in rotation when called, later registrations and deregistrations are not reflected
     List<Provider> getAvailableServices();
 
+    // Immutable snapshot of the providers in rotation, safe to read without locking.
+    // Providers temporarily BUSY are part of it, see Provider.isAvailable()
+    ProviderSnapshot getAvailableSnapshot();
+
+    // Health checked providers, in rotation or not, and the state of their circuit breaker
+    Map<Provider, CircuitBreakerState> getCircuitBreakerStates();
+
     RegistryConfig getCurrentConfig();
+
+    void addRegistryListener(ProviderRegistryListener listener);
 }
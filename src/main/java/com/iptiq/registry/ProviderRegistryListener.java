@@ -0,0 +1,14 @@
+package com.iptiq.registry;
+
+import com.iptiq.providers.Provider;
+
+/**
+ * Notified on provider membership changes of a registry (explicit registration / deregistration).
+ * Transient availability flips (BUSY / OK) are not membership changes and are not reported here.
+ */
+public interface ProviderRegistryListener {
+
+    void providerRegistered(Provider provider);
+
+    void providerDeregistered(Provider provider);
+}
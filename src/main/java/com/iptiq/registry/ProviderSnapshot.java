@@ -0,0 +1,78 @@
+package com.iptiq.registry;
+
+import com.iptiq.providers.Provider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of the providers available at a given point in time.
+ * The registry publishes a new instance on every membership change (copy-on-write), so readers on the request path
+ * can work on a consistent array without taking any lock.
+ */
+public final class ProviderSnapshot {
+
+    public static final ProviderSnapshot EMPTY = new ProviderSnapshot(new Provider[0], 0L);
+
+    private final Provider[] providers;
+
+    // Monotonically increasing version, bumped on every published change.
+    private final long version;
+
+    private ProviderSnapshot(Provider[] providers, long version) {
+        this.providers = providers;
+        this.version = version;
+    }
+
+    public int size() {
+        return providers.length;
+    }
+
+    public boolean isEmpty() {
+        return providers.length == 0;
+    }
+
+    public Provider get(int index) {
+        return providers[index];
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Read-only list over this snapshot, unaffected by later membership changes
+    public List<Provider> asList() {
+        return Collections.unmodifiableList(Arrays.asList(providers));
+    }
+
+    public boolean contains(Provider provider) {
+        return indexOf(provider) >= 0;
+    }
+
+    ProviderSnapshot withAdded(Provider provider) {
+        Provider[] copy = Arrays.copyOf(providers, providers.length + 1);
+        copy[providers.length] = provider;
+        return new ProviderSnapshot(copy, version + 1);
+    }
+
+    ProviderSnapshot withRemoved(Provider provider) {
+        int index = indexOf(provider);
+        if (index < 0) {
+            return this;
+        }
+        Provider[] copy = new Provider[providers.length - 1];
+        System.arraycopy(providers, 0, copy, 0, index);
+        System.arraycopy(providers, index + 1, copy, index, providers.length - index - 1);
+        return new ProviderSnapshot(copy, version + 1);
+    }
+
+    private int indexOf(Provider provider) {
+        for (int i = 0; i < providers.length; i++) {
+            if (providers[i].equals(provider)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,7 +1,14 @@
 package com.iptiq.config;
 
+import com.iptiq.core.BalancingStrategy;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class ConfigProviderTest {
@@ -13,4 +20,109 @@ public class ConfigProviderTest {
         assertNotNull(ConfigProvider.getConfig().getRegistry());
         assertTrue(ConfigProvider.getConfig() == ConfigProvider.getConfig());
     }
+
+    @Test
+    void testReloadConfig() {
+        ApplicationConfig previous = ConfigProvider.getConfig();
+        AtomicReference<ApplicationConfig> notified = new AtomicReference<>();
+        ConfigChangeListener listener = (oldConfig, newConfig) -> {
+            assertSame(previous, oldConfig);
+            notified.set(newConfig);
+        };
+        ConfigProvider.addChangeListener(listener);
+        try {
+            // A new configuration object is published, the previous one is left untouched
+            assertTrue(ConfigProvider.reload());
+            assertNotSame(previous, ConfigProvider.getConfig());
+            assertSame(ConfigProvider.getConfig(), notified.get());
+        } finally {
+            ConfigProvider.removeChangeListener(listener);
+        }
+    }
+
+    @Test
+    void testCopyConfig() {
+        ApplicationConfig current = ConfigProvider.getConfig();
+        ApplicationConfig copy = ConfigProvider.copyConfig();
+
+        // Every value is kept, in new objects which can be changed without touching the configuration in use
+        assertNotSame(current, copy);
+        assertNotSame(current.getLoadBalancer(), copy.getLoadBalancer());
+        assertNotSame(current.getRegistry().getCircuitBreaker(), copy.getRegistry().getCircuitBreaker());
+        assertEquals(current.getLoadBalancer().getDefaultStrategy(), copy.getLoadBalancer().getDefaultStrategy());
+        assertEquals(current.getLoadBalancer().getMaxQueuedRequestsPerProvider(), copy.getLoadBalancer().getMaxQueuedRequestsPerProvider());
+        assertEquals(current.getLoadBalancer().getRetry().isEnabled(), copy.getLoadBalancer().getRetry().isEnabled());
+        assertEquals(current.getRegistry().getCircuitBreaker().getSlowCallDurationMillis(), copy.getRegistry().getCircuitBreaker().getSlowCallDurationMillis());
+        assertEquals(current.getMetrics().getPort(), copy.getMetrics().getPort());
+
+        int workers = current.getLoadBalancer().getMaxConcurrentWorkersPerProvider();
+        copy.getLoadBalancer().setMaxConcurrentWorkersPerProvider(workers + 1);
+        assertEquals(workers, current.getLoadBalancer().getMaxConcurrentWorkersPerProvider());
+    }
+
+    @Test
+    void testInvalidConfigRejected() {
+        ApplicationConfig current = ConfigProvider.getConfig();
+
+        ApplicationConfig noWorkers = validConfig();
+        noWorkers.getLoadBalancer().setMaxConcurrentWorkersPerProvider(0);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ConfigProvider.setConfig(noWorkers));
+        assertTrue(e.getMessage().contains("loadBalancer.maxConcurrentWorkersPerProvider"));
+        assertSame(current, ConfigProvider.getConfig());
+
+        ApplicationConfig spinningChecks = validConfig();
+        spinningChecks.getRegistry().setHealthCheckFrequencyMillis(0);
+        e = assertThrows(IllegalArgumentException.class, () -> ConfigProvider.setConfig(spinningChecks));
+        assertTrue(e.getMessage().contains("registry.healthCheckFrequencyMillis"));
+        assertSame(current, ConfigProvider.getConfig());
+
+        ApplicationConfig noLoadBalancer = validConfig();
+        noLoadBalancer.setLoadBalancer(null);
+        assertThrows(IllegalArgumentException.class, () -> ConfigProvider.setConfig(noLoadBalancer));
+        assertSame(current, ConfigProvider.getConfig());
+
+        ApplicationConfig valid = validConfig();
+        try {
+            ConfigProvider.setConfig(valid);
+            assertSame(valid, ConfigProvider.getConfig());
+        } finally {
+            ConfigProvider.setConfig(current);
+        }
+    }
+
+    @Test
+    void testWatchConfigFile() throws Exception {
+        Path directory = Files.createTempDirectory("config");
+        Path file = Files.write(directory.resolve("application_config.yaml"), "registry: {}\n".getBytes());
+        Path other = directory.resolve("other.yaml");
+        CountDownLatch changed = new CountDownLatch(1);
+        try (ConfigWatcher watcher = new ConfigWatcher(file, changed::countDown)) {
+            watcher.start();
+            // Other files of the directory are ignored
+            Files.write(other, "other: true\n".getBytes());
+            assertFalse(changed.await(500, TimeUnit.MILLISECONDS));
+            Files.write(file, "registry: {healthCheckFrequencyMillis: 100}\n".getBytes());
+            assertTrue(changed.await(5, TimeUnit.SECONDS));
+        } finally {
+            Files.delete(file);
+            Files.delete(other);
+            Files.delete(directory);
+        }
+    }
+
+    private static ApplicationConfig validConfig() {
+        RegistryConfig registry = new RegistryConfig();
+        registry.setMaxAllowedRegisteredProviders(2);
+        registry.setHealthCheckFrequencyMillis(3000);
+        registry.setHealthCheckRequestTimeoutMillis(3000);
+
+        LoadBalancerConfig loadBalancer = new LoadBalancerConfig();
+        loadBalancer.setMaxConcurrentWorkersPerProvider(5);
+        loadBalancer.setDefaultStrategy(BalancingStrategy.RANDOM);
+
+        ApplicationConfig config = new ApplicationConfig();
+        config.setRegistry(registry);
+        config.setLoadBalancer(loadBalancer);
+        return config;
+    }
 }
@@ -0,0 +1,45 @@
+package com.iptiq.core;
+
+import com.iptiq.config.RegistryConfig;
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.InMemoryProviderRegistry;
+import com.iptiq.registry.ProviderMock;
+import com.iptiq.registry.ProviderSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    void testKeyHash() {
+        // Reference MurmurHash3 x64 128 bits values (first half), seed 0
+        assertEquals(0xcbd8a7b341bd9b02L, ConsistentHashRing.hash("hello"));
+        assertEquals(0xe34bbc7bbc071b6cL, ConsistentHashRing.hash("The quick brown fox jumps over the lazy dog"));
+        assertEquals(0L, ConsistentHashRing.hash(""));
+    }
+
+    @Test
+    void testStaleSnapshotIgnored() throws Exception {
+        RegistryConfig config = new RegistryConfig();
+        config.setMaxAllowedRegisteredProviders(2);
+        InMemoryProviderRegistry registry = new InMemoryProviderRegistry(config);
+        Provider p1 = new ProviderMock(registry);
+        Provider p2 = new ProviderMock(registry);
+        registry.registerProvider(p1);
+        ProviderSnapshot stale = registry.getAvailableSnapshot();
+        registry.registerProvider(p2);
+
+        ConsistentHashRing ring = new ConsistentHashRing();
+        ring.select(registry.getAvailableSnapshot(), "key");
+        // A caller still holding the previous snapshot must not remove p2 from the ring
+        Set<Provider> selected = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            selected.add(ring.select(stale, "key-" + i));
+        }
+        assertEquals(Set.of(p1, p2), selected);
+    }
+}
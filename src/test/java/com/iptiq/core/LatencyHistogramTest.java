@@ -0,0 +1,109 @@
+package com.iptiq.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void testLatencyHistogramBuckets() {
+        // Every bucket upper bound maps back to its own bucket, and the next value to the next bucket
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT - 1; i++) {
+            long upper = LatencyHistogram.bucketUpperBound(i);
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            assertEquals(i + 1, LatencyHistogram.bucketIndex(upper + 1));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(LatencyHistogram.HIGHEST_TRACKABLE_VALUE));
+    }
+
+    @Test
+    void testLatencyHistogramHighestTrackableValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.HOURS.toNanos(2));
+        histogram.record(Long.MAX_VALUE);
+
+        // Counted in the last bucket, the exact max being kept
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        assertEquals(0, snapshot.getCountAtOrBelow(LatencyHistogram.HIGHEST_TRACKABLE_VALUE / 2));
+        assertEquals(2, snapshot.getCountAtOrBelow(Long.MAX_VALUE));
+        assertTrue(snapshot.getValueAtPercentile(50) >= LatencyHistogram.HIGHEST_TRACKABLE_VALUE);
+    }
+
+    @Test
+    void testLatencyHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+
+        // 1 to 10000 microseconds
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(10_000_000, snapshot.getMax());
+        assertEquals(5_000_000, snapshot.getValueAtPercentile(50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, snapshot.getValueAtPercentile(99), 9_900_000 * 0.04);
+        assertEquals(10_000_000, snapshot.getValueAtPercentile(100));
+        assertEquals(10_000L * 10_001 / 2 * 1000, snapshot.getSum());
+        assertEquals(1_000, snapshot.getCountAtOrBelow(1_000_000), 1_000 * 0.04);
+        assertEquals(10_000, snapshot.getCountAtOrBelow(Long.MAX_VALUE));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    @Test
+    void testLatencyHistogramIntervals() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(2000);
+        HistogramSnapshot first = histogram.intervalSnapshot();
+        assertEquals(2, first.getCount());
+
+        histogram.record(3000);
+        HistogramSnapshot second = histogram.intervalSnapshot();
+        assertEquals(1, second.getCount());
+        assertEquals(3000, second.getMax());
+        assertEquals(0, histogram.intervalSnapshot().getCount());
+
+        // Cumulative view still covers every interval, and merging intervals gives it back
+        HistogramSnapshot total = histogram.snapshot();
+        assertEquals(3, total.getCount());
+        assertEquals(3000, total.getMax());
+        HistogramSnapshot merged = first.merge(second);
+        assertEquals(total.getCount(), merged.getCount());
+        assertEquals(total.getValueAtPercentile(50), merged.getValueAtPercentile(50));
+    }
+
+    @Test
+    void testLatencyHistogramConcurrentIntervals() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int writers = 4;
+        int values = 200_000;
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            new Thread(() -> {
+                for (int i = 0; i < values; i++) {
+                    histogram.record(1000);
+                }
+                done.countDown();
+            }).start();
+        }
+        // Every interval is consistent, each value counted landing in its sum, and nothing is lost nor counted twice
+        long count = 0;
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            HistogramSnapshot interval = histogram.intervalSnapshot();
+            assertEquals(interval.getCount() * 1000, interval.getSum());
+            count += interval.getCount();
+        }
+        count += histogram.intervalSnapshot().getCount();
+        assertEquals((long) writers * values, count);
+        assertEquals(count, histogram.snapshot().getCount());
+    }
+}
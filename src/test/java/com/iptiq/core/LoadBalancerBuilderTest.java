@@ -4,10 +4,14 @@ import com.iptiq.config.ConfigProvider;
 import com.iptiq.config.RegistryConfig;
 import com.iptiq.providers.Provider;
 import com.iptiq.providers.ProviderStatus;
+import com.iptiq.registry.CircuitBreakerState;
 import com.iptiq.registry.ProviderRegistry;
+import com.iptiq.registry.ProviderRegistryListener;
+import com.iptiq.registry.ProviderSnapshot;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -44,11 +48,25 @@ public class LoadBalancerBuilderTest {
                 return null;
             }
 
+            @Override
+            public ProviderSnapshot getAvailableSnapshot() {
+                return null;
+            }
+
+            @Override
+            public Map<Provider, CircuitBreakerState> getCircuitBreakerStates() {
+                return null;
+            }
+
             @Override
             public RegistryConfig getCurrentConfig() {
                 return null;
             }
 
+            @Override
+            public void addRegistryListener(ProviderRegistryListener listener) {
+            }
+
             @Override
             public void providerStateChanged(Provider provider, ProviderStatus newStatus) {
             }
@@ -1,25 +1,51 @@
 package com.iptiq.core;
 
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.CacheConfig;
 import com.iptiq.config.ConfigProvider;
+import com.iptiq.config.HedgingConfig;
 import com.iptiq.config.LoadBalancerConfig;
 import com.iptiq.config.RegistryConfig;
+import com.iptiq.config.RetryConfig;
+import com.iptiq.registry.ProviderMock;
 import com.iptiq.registry.ProviderRegistry;
 import com.iptiq.registry.RegistryOperationException;
+import com.iptiq.providers.ExecutionMode;
 import com.iptiq.providers.InMemoryProvider;
 import com.iptiq.providers.Provider;
+import com.iptiq.providers.ProviderOverloadedException;
+import com.iptiq.providers.ProviderStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class LoadBalancerImplTest {
 
     @BeforeEach
     void init() {
+        ConfigProvider.setConfig(testConfig());
+    }
+
+    // A new configuration object for each change, the published one is never modified
+    private static ApplicationConfig testConfig() {
         RegistryConfig testRegConfig = new RegistryConfig();
         testRegConfig.setMaxAllowedRegisteredProviders(2);
         testRegConfig.setHealthCheckRequestTimeoutMillis(3000);
@@ -29,8 +55,10 @@ public class LoadBalancerImplTest {
         loadBalancingConfig.setMaxConcurrentWorkersPerProvider(100);
         loadBalancingConfig.setDefaultStrategy(BalancingStrategy.RANDOM);
 
-        ConfigProvider.getConfig().setRegistry(testRegConfig);
-        ConfigProvider.getConfig().setLoadBalancer(loadBalancingConfig);
+        ApplicationConfig config = new ApplicationConfig();
+        config.setRegistry(testRegConfig);
+        config.setLoadBalancer(loadBalancingConfig);
+        return config;
     }
 
     @Test
@@ -53,8 +81,48 @@ public class LoadBalancerImplTest {
             fail("Unexpected exception occured " + e);
         }
 
-        assertEquals(100, lb.getMetrics().get(provider.getUuid().toString()).intValue());
+        assertEquals(100, lb.getMetrics().getProvider(provider.getUuid()).getDispatched());
+
+    }
+
+    @Test
+    void testLoadBalancerConcurrentMetrics() throws InterruptedException {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // Provider is known from the metrics as soon as registered
+        assertEquals(0, lb.getMetrics().getProvider(provider.getUuid()).getDispatched());
 
+        int threads = 8;
+        int callsPerThread = 50;
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            callers.submit(() -> {
+                for (int i = 0; i < callsPerThread; i++) {
+                    handleSynchronousGet(lb);
+                }
+                return null;
+            });
+        }
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+
+        MetricsSnapshot metrics = lb.getMetrics();
+        assertEquals(threads * callsPerThread, metrics.getProvider(provider.getUuid()).getDispatched());
+        assertEquals(threads * callsPerThread, metrics.getProvider(provider.getUuid()).getSucceeded());
+        assertEquals(0, metrics.getProvider(provider.getUuid()).getFailed());
+
+        // snapshot is not affected by later calls
+        lb.clearMetrics();
+        assertEquals(threads * callsPerThread, metrics.getProvider(provider.getUuid()).getDispatched());
+        assertEquals(0, lb.getMetrics().getProvider(provider.getUuid()).getDispatched());
     }
 
     @Test
@@ -71,7 +139,9 @@ public class LoadBalancerImplTest {
 
     @Test
     void testLoadBalancerUnavailableAllProvidersBusy() {
-        ConfigProvider.getConfig().getLoadBalancer().setMaxConcurrentWorkersPerProvider(1);
+        ApplicationConfig config = testConfig();
+        config.getLoadBalancer().setMaxConcurrentWorkersPerProvider(1);
+        ConfigProvider.setConfig(config);
         LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
 
         ProviderRegistry registry = lb.getRegistry();
@@ -129,8 +199,8 @@ public class LoadBalancerImplTest {
             if (i < 2) {
                 continue;
             }
-            assertEquals(i / 2 + 1, lb.getMetrics().get(providers.get(0).getUuid().toString()).intValue(), "iteration " + i);
-            assertEquals(i / 2 + i % 2, lb.getMetrics().get(providers.get(1).getUuid().toString()).intValue(), "iteration " + i);
+            assertEquals(i / 2 + 1, lb.getMetrics().getProvider(providers.get(0).getUuid()).getDispatched(), "iteration " + i);
+            assertEquals(i / 2 + i % 2, lb.getMetrics().getProvider(providers.get(1).getUuid()).getDispatched(), "iteration " + i);
         }
 
 
@@ -145,8 +215,846 @@ public class LoadBalancerImplTest {
             handleSynchronousGet(lb);
         }
         double nominal = (double) requestsCount / lb.getRegistry().getAvailableServices().size();
-        assertTrue(1 - Math.abs(nominal - (double) requestsCount / lb.getMetrics().get(provider1.getUuid().toString()).intValue() / nominal) < maxDeviation);
-        assertTrue(1 - Math.abs(nominal - (double) requestsCount / lb.getMetrics().get(provider2.getUuid().toString()).intValue() / nominal) < maxDeviation);
+        assertTrue(1 - Math.abs(nominal - (double) requestsCount / lb.getMetrics().getProvider(provider1.getUuid()).getDispatched() / nominal) < maxDeviation);
+        assertTrue(1 - Math.abs(nominal - (double) requestsCount / lb.getMetrics().getProvider(provider2.getUuid()).getDispatched() / nominal) < maxDeviation);
+    }
+
+    @Test
+    void testLoadBalancerLeastOutstandingRequests() throws ServiceUnavailableException, InterruptedException {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.LEAST_OUTSTANDING_REQUESTS).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider slowProvider = new InMemoryProvider(registry);
+        List<Throwable> fastFailures = Collections.synchronizedList(new ArrayList<>());
+        Provider fastProvider = recordingProvider(registry, fastFailures);
+        try {
+            registry.registerProvider(slowProvider);
+            registry.registerProvider(fastProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // Keep the slow provider busy with pending requests, well above the fast provider lagging completions
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            slowProvider.invokeProvider(() -> {
+                release.await();
+                return null;
+            });
+        }
+        assertEquals(10, slowProvider.getOutstandingRequests());
+
+        for (int i = 0; i < 50; i++) {
+            handleSynchronousGet(lb);
+        }
+        assertEquals(0, lb.getMetrics().getProvider(slowProvider.getUuid()).getDispatched());
+        assertEquals(50, lb.getMetrics().getProvider(fastProvider.getUuid()).getDispatched());
+
+        release.countDown();
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (slowProvider.getOutstandingRequests() > 0) {
+                Thread.sleep(10);
+            }
+        });
+    }
+
+    @Test
+    void testLoadBalancerPowerOfTwoChoices() throws ServiceUnavailableException {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().withBalancingStrategy(BalancingStrategy.P2C).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider busyProvider = new InMemoryProvider(registry);
+        Provider idleProvider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(busyProvider);
+            registry.registerProvider(idleProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            busyProvider.invokeProvider(() -> {
+                release.await();
+                return null;
+            });
+        }
+
+        // With two providers both are always sampled, the idle one must win
+        for (int i = 0; i < 20; i++) {
+            handleSynchronousGet(lb);
+        }
+        assertEquals(0, lb.getMetrics().getProvider(busyProvider.getUuid()).getDispatched());
+        assertEquals(20, lb.getMetrics().getProvider(idleProvider.getUuid()).getDispatched());
+        release.countDown();
+    }
+
+    @Test
+    void testLoadBalancerWeightedRoundRobin() throws ServiceUnavailableException {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.WEIGHTED_ROUND_ROBIN).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider bigProvider = new InMemoryProvider(registry);
+        Provider smallProvider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(bigProvider, 3);
+            registry.registerProvider(smallProvider, 1);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        for (int i = 0; i < 400; i++) {
+            handleSynchronousGet(lb);
+            if (i % 4 == 3) {
+                // smooth interleaving: exact proportion on each cycle
+                assertEquals(3 * (i / 4 + 1), lb.getMetrics().getProvider(bigProvider.getUuid()).getDispatched(), "iteration " + i);
+                assertEquals(i / 4 + 1, lb.getMetrics().getProvider(smallProvider.getUuid()).getDispatched(), "iteration " + i);
+            }
+        }
+
+        // Weight changes apply on the fly
+        lb.clearMetrics();
+        smallProvider.setWeight(3);
+        for (int i = 0; i < 600; i++) {
+            handleSynchronousGet(lb);
+        }
+        assertEquals(300, lb.getMetrics().getProvider(bigProvider.getUuid()).getDispatched());
+        assertEquals(300, lb.getMetrics().getProvider(smallProvider.getUuid()).getDispatched());
+    }
+
+    @Test
+    void testLoadBalancerPeakEwma() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().withBalancingStrategy(BalancingStrategy.PEAK_EWMA).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider degradedProvider = new InMemoryProvider(registry);
+        Provider healthyProvider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(degradedProvider);
+            registry.registerProvider(healthyProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // A single slow response is enough to penalize a provider
+        degradedProvider.invokeProvider(() -> {
+            Thread.sleep(200);
+            return null;
+        }).get();
+        // latency is recorded once the worker is done with the task, right after the future completion
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (degradedProvider.getLatencyEwmaNanos() <= healthyProvider.getLatencyEwmaNanos()) {
+                Thread.sleep(10);
+            }
+        });
+
+        for (int i = 0; i < 50; i++) {
+            handleSynchronousGet(lb);
+        }
+        assertEquals(0, lb.getMetrics().getProvider(degradedProvider.getUuid()).getDispatched());
+        assertEquals(50, lb.getMetrics().getProvider(healthyProvider.getUuid()).getDispatched());
+    }
+
+    @Test
+    void testLoadBalancerConsistentHash() throws Exception {
+        ApplicationConfig config = testConfig();
+        config.getRegistry().setMaxAllowedRegisteredProviders(3);
+        ConfigProvider.setConfig(config);
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.CONSISTENT_HASH).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider1 = new InMemoryProvider(registry);
+        Provider provider2 = new InMemoryProvider(registry);
+        Provider provider3 = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(provider1);
+            registry.registerProvider(provider2);
+            registry.registerProvider(provider3);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // InMemoryProvider answers with its own uuid
+        int keysCount = 300;
+        Map<String, Object> owners = new HashMap<>();
+        for (int i = 0; i < keysCount; i++) {
+            owners.put("key-" + i, lb.get("key-" + i).get());
+        }
+        for (int i = 0; i < keysCount; i++) {
+            assertEquals(owners.get("key-" + i), lb.get("key-" + i).get());
+        }
+        for (Provider provider : List.of(provider1, provider2, provider3)) {
+            assertTrue(owners.containsValue(provider.getUuid().toString()));
+        }
+
+        // Only the keys owned by the leaving provider move
+        registry.deregisterProvider(provider2);
+        for (int i = 0; i < keysCount; i++) {
+            Object owner = lb.get("key-" + i).get();
+            assertNotEquals(provider2.getUuid().toString(), owner);
+            if (!owners.get("key-" + i).equals(provider2.getUuid().toString())) {
+                assertEquals(owners.get("key-" + i), owner);
+            }
+        }
+    }
+
+    @Test
+    void testLoadBalancerGetAsync() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+
+        // No provider registered, reported through the future
+        CompletableFuture<String> unavailable = lb.getAsync();
+        ExecutionException ee = assertThrows(ExecutionException.class, unavailable::get);
+        assertTrue(ee.getCause() instanceof ServiceUnavailableException);
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        List<CompletableFuture<Integer>> lengths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lengths.add(lb.getAsync().orTimeout(5, TimeUnit.SECONDS).thenApply(String::length));
+        }
+        CompletableFuture.allOf(lengths.toArray(new CompletableFuture[0])).get();
+        for (CompletableFuture<Integer> length : lengths) {
+            assertEquals(provider.getUuid().toString().length(), length.get().intValue());
+        }
+        assertEquals(100, lb.getMetrics().getProvider(provider.getUuid()).getSucceeded());
+    }
+
+    @Test
+    void testLoadBalancerGetAsyncWinnerNotCancelled() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Provider provider = recordingProvider(registry, failures);
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(provider.getUuid().toString(), lb.getAsync().get(5, TimeUnit.SECONDS));
+        }
+        // The invocation completing the request is the winner, it completes normally on the provider side
+        assertTimeout(Duration.ofSeconds(2), () -> {
+            while (provider.getOutstandingRequests() > 0) {
+                Thread.sleep(10);
+            }
+        });
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(200, lb.getMetrics().getProvider(provider.getUuid()).getSucceeded());
+        assertEquals(0, lb.getMetrics().getProvider(provider.getUuid()).getFailed());
+    }
+
+    @Test
+    void testLoadBalancerVirtualThreadsExecution() throws Exception {
+        if (Boolean.getBoolean("virtualThreads.required")) {
+            // virtual-threads build profile, which must not silently skip this test
+            assertTrue(supportsVirtualThreads(), "virtual threads required, not supported by Java " + System.getProperty("java.version"));
+        }
+        // Otherwise the provider falls back to platform threads, there is nothing specific to check
+        assumeTrue(supportsVirtualThreads(), "virtual threads require Java 21+");
+        ApplicationConfig config = testConfig();
+        config.getLoadBalancer().setExecutionMode(ExecutionMode.VIRTUAL_THREADS);
+        config.getLoadBalancer().setMaxConcurrentWorkersPerProvider(5);
+        ConfigProvider.setConfig(config);
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // Concurrency stays bounded by the provider capacity
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger platformThreadRuns = new AtomicInteger();
+        List<Future> invocations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            invocations.add(provider.invokeProvider(() -> {
+                if (!(boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())) {
+                    platformThreadRuns.incrementAndGet();
+                }
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+        for (Future invocation : invocations) {
+            invocation.get(5, TimeUnit.SECONDS);
+        }
+        assertTrue(maxRunning.get() <= 5, "max running " + maxRunning.get());
+        assertEquals(0, platformThreadRuns.get());
+
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (lb.getRegistry().getAvailableServices().isEmpty()) {
+                Thread.sleep(10);
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            handleSynchronousGet(lb);
+        }
+        assertEquals(20, lb.getMetrics().getProvider(provider.getUuid()).getSucceeded());
+        provider.tearDownService();
+    }
+
+    @Test
+    void testLoadBalancerOverloadedProviderFailover() throws Exception {
+        // Enough workers for the healthy provider never to be BUSY between two calls, whatever the completion lag
+        ApplicationConfig config = testConfig();
+        config.getLoadBalancer().setMaxConcurrentWorkersPerProvider(10);
+        config.getLoadBalancer().setMaxQueuedRequestsPerProvider(2);
+        ConfigProvider.setConfig(config);
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().withBalancingStrategy(BalancingStrategy.ROUND_ROBIN).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        ProviderMock overloadedProvider = new ProviderMock(registry);
+        Provider healthyProvider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(overloadedProvider);
+            registry.registerProvider(healthyProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // Ten running and two queued requests fill the provider up
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 12; i++) {
+            overloadedProvider.invokeProvider(() -> release.await(5, TimeUnit.SECONDS));
+        }
+        assertThrows(ProviderOverloadedException.class, () -> overloadedProvider.invokeProvider(() -> null));
+        // Pretend it is still OK, as seen by a selection racing with the last admitted request
+        overloadedProvider.setStatus(ProviderStatus.OK);
+
+        for (int i = 0; i < 10; i++) {
+            handleSynchronousGet(lb);
+        }
+        assertEquals(0, lb.getMetrics().getProvider(overloadedProvider.getUuid()).getDispatched());
+        // every other round robin pick
+        assertEquals(5, lb.getMetrics().getProvider(overloadedProvider.getUuid()).getRejected());
+        assertEquals(10, lb.getMetrics().getProvider(healthyProvider.getUuid()).getDispatched());
+        release.countDown();
+    }
+
+    @Test
+    void testLoadBalancerRetiredProvidersMetricsBounded() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+        ProviderRegistry registry = lb.getRegistry();
+
+        // Providers churn: each one serves a request, then is torn down and deregistered
+        List<Provider> retired = new ArrayList<>();
+        for (int i = 0; i < LoadBalancerImpl.RETIRED_PROVIDERS_METRICS * 2; i++) {
+            Provider provider = new InMemoryProvider(registry);
+            try {
+                registry.registerProvider(provider);
+            } catch (RegistryOperationException e) {
+                fail("Unexpected exception occured " + e);
+            }
+            lb.get().get(5, TimeUnit.SECONDS);
+            provider.tearDownService();
+            retired.add(provider);
+        }
+
+        // Only the metrics of the latest retired providers are kept
+        Map<UUID, ProviderMetricsSnapshot> providers = lb.getMetrics().getProviders();
+        assertEquals(LoadBalancerImpl.RETIRED_PROVIDERS_METRICS, providers.size());
+        assertFalse(providers.containsKey(retired.get(0).getUuid()));
+        assertEquals(1, providers.get(retired.get(retired.size() - 1).getUuid()).getSucceeded());
+    }
+
+    @Test
+    void testLoadBalancerBusyHysteresis() throws Exception {
+        ApplicationConfig config = testConfig();
+        config.getLoadBalancer().setMaxConcurrentWorkersPerProvider(4);
+        config.getLoadBalancer().setBusyLowWatermarkPercent(50);
+        ConfigProvider.setConfig(config);
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        List<ProviderStatus> transitions = Collections.synchronizedList(new ArrayList<>());
+        Provider provider = new InMemoryProvider((p, status) -> {
+            transitions.add(status);
+            registry.providerStateChanged(p, status);
+        });
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        List<CountDownLatch> releases = new ArrayList<>();
+        List<Future> invocations = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CountDownLatch release = new CountDownLatch(1);
+            releases.add(release);
+            invocations.add(provider.invokeProvider(() -> release.await(5, TimeUnit.SECONDS)));
+        }
+        // Capacity reached: BUSY, skipped by the load balancer but still registered
+        assertFalse(provider.isAvailable());
+        assertEquals(1, registry.getAvailableServices().size());
+        assertThrows(ServiceUnavailableException.class, () -> lb.get());
+
+        // One completion is not enough to be OK again, the load must go down to the low watermark
+        releases.get(0).countDown();
+        invocations.get(0).get();
+        Thread.sleep(50);
+        assertFalse(provider.isAvailable());
+
+        releases.get(1).countDown();
+        invocations.get(1).get();
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (!provider.isAvailable()) {
+                Thread.sleep(10);
+            }
+        });
+        assertEquals(List.of(ProviderStatus.BUSY, ProviderStatus.OK), transitions);
+        handleSynchronousGet(lb);
+
+        releases.forEach(CountDownLatch::countDown);
+    }
+
+    @Test
+    void testLoadBalancerHedging() throws Exception {
+        HedgingConfig hedging = new HedgingConfig();
+        hedging.setEnabled(true);
+        hedging.setDelayMillis(20);
+        hedging.setBudgetPercent(100);
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.ROUND_ROBIN).withHedging(hedging).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider slowProvider = new InMemoryProvider(registry) {
+            @Override
+            public String get() {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("interrupted", e);
+                }
+                return super.get();
+            }
+        };
+        List<Throwable> fastFailures = Collections.synchronizedList(new ArrayList<>());
+        Provider fastProvider = recordingProvider(registry, fastFailures);
+        try {
+            registry.registerProvider(slowProvider);
+            registry.registerProvider(fastProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // Round robin picks the slow provider first, the hedge sent to the fast one answers
+        String response = assertTimeout(Duration.ofSeconds(2), () -> (String) lb.get().get());
+        assertEquals(fastProvider.getUuid().toString(), response);
+        assertEquals(1, lb.getMetrics().getHedged());
+
+        // The losing invocation is cancelled and neither counted as a success nor as a failure
+        assertTimeout(Duration.ofSeconds(2), () -> {
+            while (slowProvider.getOutstandingRequests() > 0 || fastProvider.getOutstandingRequests() > 0) {
+                Thread.sleep(10);
+            }
+        });
+        assertEquals(0, lb.getMetrics().getProvider(slowProvider.getUuid()).getSucceeded());
+        assertEquals(0, lb.getMetrics().getProvider(slowProvider.getUuid()).getFailed());
+        // while the winning hedge is not cancelled
+        assertEquals(Collections.emptyList(), fastFailures);
+    }
+
+    @Test
+    void testLoadBalancerRetryOnAlternateProvider() throws Exception {
+        RetryConfig retry = new RetryConfig();
+        retry.setEnabled(true);
+        retry.setBudgetPercent(100);
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.ROUND_ROBIN).withRetry(retry).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider failingProvider = failingProvider(registry);
+        Provider healthyProvider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(failingProvider);
+            registry.registerProvider(healthyProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // Every other request fails on the first provider, and is transparently retried on the other one
+        for (int i = 0; i < 10; i++) {
+            assertEquals(healthyProvider.getUuid().toString(), lb.get().get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(5, lb.getMetrics().getRetried());
+        assertEquals(5, lb.getMetrics().getProvider(failingProvider.getUuid()).getFailed());
+        assertEquals(10, lb.getMetrics().getProvider(healthyProvider.getUuid()).getSucceeded());
+    }
+
+    @Test
+    void testLoadBalancerRetryBudgetExhausted() throws Exception {
+        RetryConfig retry = new RetryConfig();
+        retry.setEnabled(true);
+        retry.setBudgetPercent(0);
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.ROUND_ROBIN).withRetry(retry).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider failingProvider = failingProvider(registry);
+        Provider healthyProvider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(failingProvider);
+            registry.registerProvider(healthyProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // No budget, the failure surfaces to the caller
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> lb.get().get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(0, lb.getMetrics().getRetried());
+    }
+
+    @Test
+    void testLoadBalancerProviderError() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider = new InMemoryProvider(registry) {
+            @Override
+            public String get() {
+                throw new AssertionError("provider error");
+            }
+        };
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // An Error thrown by the provider fails the request instead of leaving it pending forever
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> lb.getAsync().get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof AssertionError);
+        assertEquals(1, lb.getMetrics().getProvider(provider.getUuid()).getFailed());
+    }
+
+    @Test
+    void testLoadBalancerGetBatch() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.ROUND_ROBIN).build();
+
+        // Nothing registered yet, the whole batch is unavailable
+        ExecutionException unavailable = assertThrows(ExecutionException.class, () -> lb.getBatch(5).get());
+        assertTrue(unavailable.getCause() instanceof ServiceUnavailableException);
+        assertEquals(5, lb.getMetrics().getUnavailable());
+        // An empty batch needs no provider
+        assertEquals(List.of(), lb.getBatch(0).get(5, TimeUnit.SECONDS));
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider1 = new InMemoryProvider(registry);
+        Provider provider2 = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(provider1);
+            registry.registerProvider(provider2);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        List<String> responses = lb.getBatch(20).get(5, TimeUnit.SECONDS);
+        assertEquals(20, responses.size());
+        assertEquals(10, Collections.frequency(responses, provider1.getUuid().toString()));
+        assertEquals(10, Collections.frequency(responses, provider2.getUuid().toString()));
+        assertEquals(10, lb.getMetrics().getProvider(provider1.getUuid()).getDispatched());
+        assertEquals(10, lb.getMetrics().getProvider(provider2.getUuid()).getDispatched());
+
+        // Larger than the spare workers, the remaining requests are spread over the provider queues the same way
+        responses = lb.getBatch(300).get(5, TimeUnit.SECONDS);
+        assertEquals(150, Collections.frequency(responses, provider1.getUuid().toString()));
+        assertEquals(150, Collections.frequency(responses, provider2.getUuid().toString()));
+    }
+
+    @Test
+    void testLoadBalancerGetBatchFailsFast() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.ROUND_ROBIN).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        CountDownLatch release = new CountDownLatch(1);
+        Provider slowProvider = new InMemoryProvider(registry) {
+            @Override
+            public String get() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("interrupted", e);
+                }
+                return super.get();
+            }
+        };
+        Provider failingProvider = failingProvider(registry);
+        try {
+            registry.registerProvider(slowProvider);
+            registry.registerProvider(failingProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // The batch fails with the first failed request, without waiting for the slow ones, which are cancelled
+        ExecutionException failure = assertTimeout(Duration.ofSeconds(2),
+                () -> assertThrows(ExecutionException.class, () -> lb.getBatch(4).get()));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertTimeout(Duration.ofSeconds(2), () -> {
+            while (slowProvider.getOutstandingRequests() > 0) {
+                Thread.sleep(10);
+            }
+        });
+        release.countDown();
+    }
+
+    @Test
+    void testLoadBalancerKeyedRequestsCoalescing() throws Exception {
+        LoadBalancer lb = new LoadBalancerBuilder().withKeyedRequestsCoalescing(true).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        CountDownLatch release = new CountDownLatch(1);
+        Provider provider = new InMemoryProvider(registry) {
+            @Override
+            public String get() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("interrupted", e);
+                }
+                return super.get();
+            }
+        };
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        // Identical keyed requests share the in-flight call
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(lb.getAsync("key"));
+        }
+        Future other = lb.get("other-key");
+        // Cancelling one caller's future leaves the shared call and the other callers alone
+        results.remove(0).cancel(true);
+        release.countDown();
+
+        for (CompletableFuture<String> result : results) {
+            assertEquals(provider.getUuid().toString(), result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(provider.getUuid().toString(), other.get(5, TimeUnit.SECONDS));
+        assertEquals(2, lb.getMetrics().getProvider(provider.getUuid()).getDispatched());
+        assertEquals(9, lb.getMetrics().getCoalesced());
+
+        // Completed calls are forgotten, a new request triggers a fresh call
+        assertEquals(provider.getUuid().toString(), lb.get("key").get(5, TimeUnit.SECONDS));
+        assertEquals(3, lb.getMetrics().getProvider(provider.getUuid()).getDispatched());
+    }
+
+    @Test
+    void testLoadBalancerCoalescingDelegateFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadBalancer failing = new ForwardingLoadBalancer(new LoadBalancerBuilder().build()) {
+            @Override
+            public CompletableFuture<String> getAsync(String key) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("delegate failure");
+                }
+                return CompletableFuture.completedFuture(key);
+            }
+        };
+        LoadBalancer lb = new CoalescingLoadBalancer(failing);
+
+        // Reported through the future, and the failed call is not left in flight for the next requests
+        ExecutionException ee = assertThrows(ExecutionException.class, () -> lb.getAsync("key").get(5, TimeUnit.SECONDS));
+        assertTrue(ee.getCause() instanceof IllegalStateException);
+        assertEquals("key", lb.getAsync("key").get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testLoadBalancerResponseCache() throws Exception {
+        CacheConfig cache = new CacheConfig();
+        cache.setEnabled(true);
+        LoadBalancer lb = new LoadBalancerBuilder().withCache(cache).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider = new InMemoryProvider(registry);
+        try {
+            registry.registerProvider(provider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        assertEquals(provider.getUuid().toString(), lb.get("key").get(5, TimeUnit.SECONDS));
+        // The response is cached right after the first call completed
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (lb.getMetrics().getCacheHits() == 0) {
+                lb.get("key").get();
+                Thread.sleep(10);
+            }
+        });
+        long dispatched = lb.getMetrics().getProvider(provider.getUuid()).getDispatched();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(provider.getUuid().toString(), lb.get("key").get());
+        }
+        assertEquals(dispatched, lb.getMetrics().getProvider(provider.getUuid()).getDispatched());
+        assertTrue(lb.getMetrics().getCacheHits() >= 11);
+
+        // Requests without key are never cached
+        handleSynchronousGet(lb);
+        assertEquals(dispatched + 1, lb.getMetrics().getProvider(provider.getUuid()).getDispatched());
+    }
+
+    @Test
+    void testLoadBalancerLatencyHistograms() throws Exception {
+        LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder()
+                .withBalancingStrategy(BalancingStrategy.ROUND_ROBIN).build();
+
+        ProviderRegistry registry = lb.getRegistry();
+        Provider slowProvider = new InMemoryProvider(registry) {
+            @Override
+            public String get() {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("interrupted", e);
+                }
+                return super.get();
+            }
+        };
+        List<Throwable> fastFailures = Collections.synchronizedList(new ArrayList<>());
+        Provider fastProvider = recordingProvider(registry, fastFailures);
+        try {
+            registry.registerProvider(slowProvider);
+            registry.registerProvider(fastProvider);
+        } catch (RegistryOperationException e) {
+            fail("Unexpected exception occured " + e);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            handleSynchronousGet(lb);
+        }
+        // Recorded within the provider task, before its future completes
+        MetricsSnapshot metrics = lb.getMetrics();
+        HistogramSnapshot slowLatency = metrics.getProvider(slowProvider.getUuid()).getLatency();
+        assertEquals(10, slowLatency.getCount());
+        assertTrue(slowLatency.getValueAtPercentile(50) >= 5_000_000L);
+        assertTrue(metrics.getProvider(fastProvider.getUuid()).getLatency().getValueAtPercentile(50) < 5_000_000L);
+        assertEquals(20, metrics.getLatency().getCount());
+
+        // Intervals drain what was recorded since the previous one
+        assertEquals(10, lb.getLatencyInterval().get(slowProvider.getUuid()).getCount());
+        assertEquals(0, lb.getLatencyInterval().get(slowProvider.getUuid()).getCount());
+        assertEquals(20, lb.getMetrics().getLatency().getCount());
+
+        lb.clearMetrics();
+        assertEquals(0, lb.getMetrics().getLatency().getCount());
+    }
+
+    @Test
+    void testConfigurationReload() throws Exception {
+        ApplicationConfig previous = ConfigProvider.getConfig();
+        ApplicationConfig initial = testConfig();
+        initial.getLoadBalancer().setMaxConcurrentWorkersPerProvider(1);
+        ConfigProvider.setConfig(initial);
+        Provider provider = null;
+        try {
+            LoadBalancerImpl lb = (LoadBalancerImpl) new LoadBalancerBuilder().build();
+            LoadBalancerImpl chosen = (LoadBalancerImpl) new LoadBalancerBuilder().withBalancingStrategy(BalancingStrategy.P2C).build();
+            ProviderRegistry registry = lb.getRegistry();
+            provider = new InMemoryProvider(registry);
+            registry.registerProvider(provider);
+            assertEquals(1, provider.getCapacity());
+
+            // Publish a new configuration, applied to the running load balancer, registry and provider
+            ApplicationConfig reloaded = new ApplicationConfig();
+            RegistryConfig registryConfig = new RegistryConfig();
+            registryConfig.setMaxAllowedRegisteredProviders(2);
+            registryConfig.setHealthCheckFrequencyMillis(100);
+            registryConfig.setHealthCheckRequestTimeoutMillis(3000);
+            reloaded.setRegistry(registryConfig);
+            LoadBalancerConfig loadBalancerConfig = new LoadBalancerConfig();
+            loadBalancerConfig.setMaxConcurrentWorkersPerProvider(2);
+            loadBalancerConfig.setDefaultStrategy(BalancingStrategy.ROUND_ROBIN);
+            reloaded.setLoadBalancer(loadBalancerConfig);
+            ConfigProvider.setConfig(reloaded);
+
+            assertSame(reloaded, ConfigProvider.getConfig());
+            assertEquals(BalancingStrategy.ROUND_ROBIN, lb.getStrategy());
+            // A strategy chosen explicitly is kept
+            assertEquals(BalancingStrategy.P2C, chosen.getStrategy());
+            assertSame(registryConfig, registry.getCurrentConfig());
+            assertEquals(2, provider.getCapacity());
+            assertEquals(ProviderStatus.OK, provider.getStatus());
+
+            // Two requests now run concurrently on the provider
+            CountDownLatch started = new CountDownLatch(2);
+            CountDownLatch release = new CountDownLatch(1);
+            Future first = provider.invokeProvider(() -> {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            });
+            Future second = provider.invokeProvider(() -> {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            release.countDown();
+            first.get();
+            second.get();
+        } finally {
+            if (provider != null) {
+                provider.tearDownService();
+            }
+            ConfigProvider.setConfig(previous);
+        }
+    }
+
+    private static boolean supportsVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // Provider keeping the failures its executor reports for the completed tasks
+    private static Provider recordingProvider(ProviderRegistry registry, List<Throwable> failures) {
+        return new InMemoryProvider(registry) {
+            @Override
+            public void taskCompleted(long latencyNanos, long executionNanos, long permit, Throwable failure) {
+                if (failure != null) {
+                    failures.add(failure);
+                }
+                super.taskCompleted(latencyNanos, executionNanos, permit, failure);
+            }
+        };
+    }
+
+    private static Provider failingProvider(ProviderRegistry registry) {
+        return new InMemoryProvider(registry) {
+            @Override
+            public String get() {
+                throw new IllegalStateException("provider failure");
+            }
+        };
     }
 
     public static void handleSynchronousGet(LoadBalancer lb) throws ServiceUnavailableException {
@@ -0,0 +1,42 @@
+package com.iptiq.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    @Test
+    void testResponseCacheExpiry() throws InterruptedException {
+        ResponseCache cache = new ResponseCache(50, 10);
+        cache.put("key", "value");
+        assertEquals("value", cache.get("key"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testResponseCacheScanResistance() {
+        ResponseCache cache = new ResponseCache(60000, 10);
+        // Frequently read entries get promoted to the protected segment
+        for (int i = 0; i < 5; i++) {
+            cache.put("hot-" + i, "value");
+            cache.get("hot-" + i);
+        }
+
+        // A scan of keys read once only churns the probation segment
+        for (int i = 0; i < 100; i++) {
+            cache.put("scan-" + i, "value");
+        }
+        assertEquals(10, cache.size());
+        assertEquals(95, cache.getEvictions());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("value", cache.get("hot-" + i));
+        }
+        assertNull(cache.get("scan-0"));
+    }
+}
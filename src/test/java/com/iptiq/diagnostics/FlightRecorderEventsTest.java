@@ -0,0 +1,115 @@
+package com.iptiq.diagnostics;
+
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.ConfigProvider;
+import com.iptiq.config.LoadBalancerConfig;
+import com.iptiq.config.RegistryConfig;
+import com.iptiq.core.BalancingStrategy;
+import com.iptiq.core.LoadBalancer;
+import com.iptiq.core.LoadBalancerBuilder;
+import com.iptiq.providers.InMemoryProvider;
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.ProviderRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderEventsTest {
+
+    @BeforeEach
+    void init() {
+        RegistryConfig testRegConfig = new RegistryConfig();
+        testRegConfig.setMaxAllowedRegisteredProviders(1);
+        testRegConfig.setHealthCheckRequestTimeoutMillis(3000);
+        testRegConfig.setHealthCheckFrequencyMillis(3000);
+        testRegConfig.getCircuitBreaker().setSlidingWindowSize(10);
+        testRegConfig.getCircuitBreaker().setMinimumNumberOfCalls(6);
+
+        LoadBalancerConfig loadBalancingConfig = new LoadBalancerConfig();
+        loadBalancingConfig.setMaxConcurrentWorkersPerProvider(1);
+        loadBalancingConfig.setDefaultStrategy(BalancingStrategy.ROUND_ROBIN);
+
+        ApplicationConfig config = new ApplicationConfig();
+        config.setRegistry(testRegConfig);
+        config.setLoadBalancer(loadBalancingConfig);
+        ConfigProvider.setConfig(config);
+    }
+
+    @Test
+    void testLoadBalancerEvents() throws Exception {
+        assertTrue(FlightRecorderSupport.AVAILABLE);
+        Path dump = Files.createTempFile("load-balancer", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.iptiq.Selection").withThreshold(Duration.ZERO);
+            recording.enable("com.iptiq.ProviderTask").withThreshold(Duration.ZERO);
+            recording.enable("com.iptiq.ProviderStatus");
+            recording.enable("com.iptiq.CircuitBreaker");
+            recording.start();
+
+            LoadBalancer lb = new LoadBalancerBuilder().build();
+            ProviderRegistry registry = lb.getRegistry();
+            Provider provider = new InMemoryProvider(registry);
+            registry.registerProvider(provider);
+            lb.get().get();
+
+            // Failing requests open the circuit breaker
+            for (int i = 0; i < 5; i++) {
+                Future failing = provider.invokeProvider(() -> {
+                    throw new IllegalStateException("provider failure");
+                });
+                assertThrows(ExecutionException.class, failing::get);
+            }
+            assertTimeout(Duration.ofSeconds(5), () -> {
+                while (registry.getAvailableServices().size() > 0) {
+                    Thread.sleep(10);
+                }
+            });
+            provider.tearDownService();
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.delete(dump);
+        String uuid = eventsNamed(events, "com.iptiq.Selection").get(0).getString("provider");
+        assertEquals("ROUND_ROBIN", eventsNamed(events, "com.iptiq.Selection").get(0).getString("strategy"));
+        assertEquals(1, eventsNamed(events, "com.iptiq.Selection").get(0).getInt("candidates"));
+
+        List<RecordedEvent> tasks = eventsNamed(events, "com.iptiq.ProviderTask");
+        assertEquals(6, tasks.size());
+        assertEquals(5, tasks.stream().filter(e -> e.getBoolean("failed")).count());
+        assertTrue(tasks.stream().allMatch(e -> uuid.equals(e.getString("provider")) && e.getLong("queueWait") >= 0
+                && e.getLong("executionTime") >= 0));
+
+        // Requests saturated the single worker, then the provider was torn down
+        List<String> statuses = eventsNamed(events, "com.iptiq.ProviderStatus").stream()
+                .map(e -> e.getString("status")).collect(Collectors.toList());
+        assertTrue(statuses.contains("BUSY"));
+        assertEquals("TEARDOWN", statuses.get(statuses.size() - 1));
+
+        RecordedEvent breaker = eventsNamed(events, "com.iptiq.CircuitBreaker").get(0);
+        assertEquals(uuid, breaker.getString("provider"));
+        assertEquals("CLOSED", breaker.getString("previousState"));
+        assertEquals("OPEN", breaker.getString("state"));
+    }
+
+    private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+        // Events are buffered per thread, hence not dumped in order
+        return events.stream().filter(e -> e.getEventType().getName().equals(name))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,167 @@
+package com.iptiq.loadtest;
+
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.ConfigProvider;
+import com.iptiq.config.LoadBalancerConfig;
+import com.iptiq.config.RegistryConfig;
+import com.iptiq.core.BalancingStrategy;
+import com.iptiq.core.HistogramSnapshot;
+import com.iptiq.core.LoadBalancer;
+import com.iptiq.core.LoadBalancerBuilder;
+import com.iptiq.core.MetricsSnapshot;
+import com.iptiq.core.ServiceUnavailableException;
+import com.iptiq.registry.ProviderRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    @BeforeEach
+    void init() {
+        RegistryConfig testRegConfig = new RegistryConfig();
+        testRegConfig.setMaxAllowedRegisteredProviders(2);
+        testRegConfig.setHealthCheckRequestTimeoutMillis(3000);
+        testRegConfig.setHealthCheckFrequencyMillis(3000);
+
+        LoadBalancerConfig loadBalancingConfig = new LoadBalancerConfig();
+        loadBalancingConfig.setMaxConcurrentWorkersPerProvider(1);
+        loadBalancingConfig.setDefaultStrategy(BalancingStrategy.ROUND_ROBIN);
+
+        ApplicationConfig config = new ApplicationConfig();
+        config.setRegistry(testRegConfig);
+        config.setLoadBalancer(loadBalancingConfig);
+        ConfigProvider.setConfig(config);
+    }
+
+    @Test
+    void testLoadGeneratorOpenLoop() throws Exception {
+        LoadBalancer lb = new LoadBalancerBuilder().build();
+        ProviderRegistry registry = lb.getRegistry();
+        registry.registerProvider(new SimulatedProvider(registry, 1, 1, 0));
+        registry.registerProvider(new SimulatedProvider(registry, 1, 1, 0));
+
+        LoadReport report = new LoadGenerator(lb).run(new LoadProfile().setRequestsPerSecond(200).setDurationMillis(500));
+        // Requests are sent on schedule, whatever the response times
+        assertEquals(100, report.getSent(), 2);
+        assertEquals(report.getSent(), report.getSucceeded() + report.getFailed());
+        assertEquals(report.getSucceeded(), report.getLatency().getCount());
+        assertTrue(report.getLatency().getValueAtPercentile(50) >= 1_000_000);
+    }
+
+    @Test
+    void testLoadGeneratorOverload() throws Exception {
+        LoadBalancer lb = new LoadBalancerBuilder().build();
+        ProviderRegistry registry = lb.getRegistry();
+        // 1 worker answering in 20 ms, offered 100 req/s: twice its capacity
+        registry.registerProvider(new SimulatedProvider(registry, 20, 20, 0));
+
+        LoadReport report = new LoadGenerator(lb).run(new LoadProfile().setRequestsPerSecond(100).setDurationMillis(500));
+        // The offered load does not slow down with the provider, the excess is refused
+        assertEquals(50, report.getSent(), 2);
+        assertTrue(report.getFailed() > 0);
+        assertEquals(report.getSent(), report.getSucceeded() + report.getFailed());
+        assertTrue(report.getThroughput() <= 60);
+    }
+
+    @Test
+    void testLoadGeneratorTimeouts() throws Exception {
+        LoadBalancer lb = new LoadBalancerBuilder().build();
+        ProviderRegistry registry = lb.getRegistry();
+        // Answering in 200 ms, far past the 50 ms timeout of the requests. Each request times out and releases the
+        // single worker before the next one is sent.
+        registry.registerProvider(new SimulatedProvider(registry, 200, 200, 0));
+
+        LoadReport report = new LoadGenerator(lb).run(new LoadProfile().setRequestsPerSecond(10).setDurationMillis(400)
+                .setTimeoutMillis(50));
+        assertEquals(4, report.getSent(), 1);
+        assertEquals(report.getSent(), report.getTimedOut());
+        assertEquals(report.getSent(), report.getFailed());
+        // Timed out requests are reported in the percentiles, at no less than the timeout
+        assertEquals(report.getSent(), report.getLatency().getCount());
+        assertTrue(report.getLatency().getValueAtPercentile(50) >= 50_000_000L);
+        assertTrue(report.getServiceTime().getValueAtPercentile(50) >= 50_000_000L);
+    }
+
+    @Test
+    void testLoadGeneratorCoordinatedOmission() throws Exception {
+        LoadBalancer lb = new LoadBalancerBuilder().build();
+        ProviderRegistry registry = lb.getRegistry();
+        registry.registerProvider(new SimulatedProvider(registry, 1, 1, 0));
+
+        // Client stalling 20 ms on every submission while 200 req/s are intended: the generator falls behind
+        LoadBalancer stallingClient = new ForwardingClient(lb) {
+            @Override
+            public CompletableFuture<String> getAsync() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getAsync();
+            }
+        };
+        LoadReport report = new LoadGenerator(stallingClient).run(new LoadProfile().setRequestsPerSecond(200).setDurationMillis(500));
+        assertEquals(100, report.getSent(), 2);
+        assertEquals(report.getSent(), report.getSucceeded());
+        // Each request takes about 20 ms once sent, but the last ones were sent more than a second late
+        assertTrue(report.getServiceTime().getValueAtPercentile(99) < 500_000_000L);
+        assertTrue(report.getLatency().getMax() >= 1_000_000_000L);
+    }
+
+    private static class ForwardingClient implements LoadBalancer {
+
+        private final LoadBalancer delegate;
+
+        ForwardingClient(LoadBalancer delegate) {
+            this.delegate = delegate;
+        }
+
+        public Future get() throws ServiceUnavailableException {
+            return delegate.get();
+        }
+
+        public Future get(String key) throws ServiceUnavailableException {
+            return delegate.get(key);
+        }
+
+        public CompletableFuture<String> getAsync() {
+            return delegate.getAsync();
+        }
+
+        public CompletableFuture<String> getAsync(String key) {
+            return delegate.getAsync(key);
+        }
+
+        public CompletableFuture<List<String>> getBatch(int n) {
+            return delegate.getBatch(n);
+        }
+
+        public ProviderRegistry getRegistry() {
+            return delegate.getRegistry();
+        }
+
+        public void setStrategy(BalancingStrategy strategy) {
+            delegate.setStrategy(strategy);
+        }
+
+        public MetricsSnapshot getMetrics() {
+            return delegate.getMetrics();
+        }
+
+        public Map<UUID, HistogramSnapshot> getLatencyInterval() {
+            return delegate.getLatencyInterval();
+        }
+
+        public void clearMetrics() {
+            delegate.clearMetrics();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.iptiq.metrics;
+
+import com.iptiq.config.ApplicationConfig;
+import com.iptiq.config.ConfigProvider;
+import com.iptiq.config.LoadBalancerConfig;
+import com.iptiq.config.MetricsConfig;
+import com.iptiq.config.RegistryConfig;
+import com.iptiq.core.BalancingStrategy;
+import com.iptiq.core.LoadBalancer;
+import com.iptiq.core.LoadBalancerBuilder;
+import com.iptiq.providers.InMemoryProvider;
+import com.iptiq.providers.Provider;
+import com.iptiq.registry.ProviderRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrometheusExporterTest {
+
+    @BeforeEach
+    void init() {
+        RegistryConfig testRegConfig = new RegistryConfig();
+        testRegConfig.setMaxAllowedRegisteredProviders(2);
+        testRegConfig.setHealthCheckRequestTimeoutMillis(3000);
+        testRegConfig.setHealthCheckFrequencyMillis(3000);
+
+        LoadBalancerConfig loadBalancingConfig = new LoadBalancerConfig();
+        loadBalancingConfig.setMaxConcurrentWorkersPerProvider(2);
+        loadBalancingConfig.setDefaultStrategy(BalancingStrategy.ROUND_ROBIN);
+
+        ApplicationConfig config = new ApplicationConfig();
+        config.setRegistry(testRegConfig);
+        config.setLoadBalancer(loadBalancingConfig);
+        ConfigProvider.setConfig(config);
+    }
+
+    @Test
+    void testMetricsEndpoint() throws Exception {
+        LoadBalancer lb = new LoadBalancerBuilder().build();
+        ProviderRegistry registry = lb.getRegistry();
+        Provider provider = new InMemoryProvider(registry);
+        registry.registerProvider(provider);
+        for (int i = 0; i < 3; i++) {
+            lb.get().get();
+        }
+
+        MetricsConfig config = new MetricsConfig();
+        config.setPort(0);
+        config.setRefreshMillis(50);
+        PrometheusExporter exporter = new PrometheusExporter(lb, config);
+        exporter.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + exporter.getPort() + "/metrics").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            String label = "provider=\"" + provider.getUuid() + "\"";
+            assertTrue(body.contains("# TYPE lb_requests_dispatched_total counter\n"));
+            assertTrue(body.contains("lb_requests_dispatched_total{" + label + "} 3\n"));
+            assertTrue(body.contains("lb_requests_succeeded_total{" + label + "} 3\n"));
+            assertTrue(body.contains("lb_requests_unavailable_total 0\n"));
+            assertTrue(body.contains("lb_provider_status{" + label + ",status=\"TEARDOWN\"} 0\n"));
+            assertTrue(body.contains("lb_provider_circuit_breaker_state{" + label + ",state=\"CLOSED\"} 1\n"));
+            assertTrue(body.contains("# TYPE lb_request_latency_seconds histogram\n"));
+            assertTrue(body.contains("lb_request_latency_seconds_bucket{" + label + ",le=\"0.0005\"} "));
+            assertTrue(body.contains("lb_request_latency_seconds_bucket{" + label + ",le=\"10\"} 3\n"));
+            assertTrue(body.contains("lb_request_latency_seconds_bucket{" + label + ",le=\"+Inf\"} 3\n"));
+            assertTrue(body.contains("lb_request_latency_seconds_count{" + label + "} 3\n"));
+        } finally {
+            exporter.stop();
+        }
+
+        // Stopping releases the server threads
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals("metrics-http"))) {
+                Thread.sleep(10);
+            }
+        });
+    }
+}
@@ -1,14 +1,23 @@
 package com.iptiq.registry;
 
+import com.iptiq.config.ApplicationConfig;
 import com.iptiq.config.ConfigProvider;
 import com.iptiq.config.RegistryConfig;
 import com.iptiq.providers.InMemoryProvider;
 import com.iptiq.providers.Provider;
 import com.iptiq.providers.ProviderStatus;
+import com.iptiq.providers.RequestGuard;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,10 +51,40 @@ public class InMemoryProviderRegistryTest {
         assertEquals(2, registry.getAvailableServices().size());
     }
 
+    @Test
+    void testProviderRegistrySnapshotIsImmutable() throws RegistryOperationException {
+        InMemoryProviderRegistry registry = new InMemoryProviderRegistry(ConfigProvider.getConfig().getRegistry());
+
+        Provider p1 = new ProviderMock(null);
+        Provider p2 = new ProviderMock(null);
+
+        registry.registerProvider(p1);
+        registry.registerProvider(p2);
+
+        ProviderSnapshot snapshot = registry.getAvailableSnapshot();
+        assertEquals(2, snapshot.size());
+
+        registry.deregisterProvider(p1);
+
+        // previously published snapshot is left untouched, a new version is published instead
+        assertEquals(2, snapshot.size());
+        assertEquals(p1, snapshot.get(0));
+        assertEquals(1, registry.getAvailableSnapshot().size());
+        assertTrue(registry.getAvailableSnapshot().getVersion() > snapshot.getVersion());
+
+        // A provider coming back from BUSY must not be added twice
+        registry.providerStateChanged(p2, ProviderStatus.OK);
+        assertEquals(1, registry.getAvailableSnapshot().size());
+    }
+
     @Test
     void testProviderRegistryMaxLimitReached() {
-        RegistryConfig config = ConfigProvider.getConfig().getRegistry();
+        // A new configuration object, the published one is never modified
+        RegistryConfig current = ConfigProvider.getConfig().getRegistry();
+        RegistryConfig config = new RegistryConfig();
         config.setMaxAllowedRegisteredProviders(10);
+        config.setHealthCheckFrequencyMillis(current.getHealthCheckFrequencyMillis());
+        config.setHealthCheckRequestTimeoutMillis(current.getHealthCheckRequestTimeoutMillis());
 
         InMemoryProviderRegistry registry = new InMemoryProviderRegistry(config);
 
@@ -97,7 +136,9 @@ public class InMemoryProviderRegistryTest {
                 Thread.sleep(checkFrequency);
             }
         });
-        assertEquals(provider2, providers.get(0));
+        // The list taken before is a snapshot, left untouched
+        assertEquals(2, providers.size());
+        assertEquals(List.of(provider2), registry.getAvailableServices());
 
 
         // Set the instance back to a working state
@@ -108,10 +149,265 @@ public class InMemoryProviderRegistryTest {
                 Thread.sleep(checkFrequency);
             }
         });
-        assertEquals(2, providers.size());
+        assertEquals(2, registry.getAvailableServices().size());
+
+        // Re-registration after circuit close must not spawn another check
+        assertEquals(2, registry.getHealthCheckersCount());
 
         provider1.tearDownService();
-        assertEquals(1, providers.size());
+        assertEquals(1, registry.getAvailableServices().size());
+        assertEquals(1, registry.getHealthCheckersCount());
+
+    }
+
+    @Test
+    void testSaturatedProviderStillHealthy() throws Exception {
+        // A single worker, published with a new configuration object for the duration of the test
+        ApplicationConfig previous = ConfigProvider.getConfig();
+        ApplicationConfig singleWorker = ConfigProvider.copyConfig();
+        singleWorker.getLoadBalancer().setMaxConcurrentWorkersPerProvider(1);
+        ConfigProvider.setConfig(singleWorker);
+
+        RegistryConfig config = new RegistryConfig();
+        config.setMaxAllowedRegisteredProviders(1);
+        config.setHealthCheckFrequencyMillis(50);
+        config.setHealthCheckRequestTimeoutMillis(50);
+
+        InMemoryProviderRegistry registry = new InMemoryProviderRegistry(config);
+        AtomicInteger breakerOpenings = new AtomicInteger();
+        registry.addRegistryListener(new ProviderRegistryListener() {
+            @Override
+            public void providerRegistered(Provider provider) {
+            }
+
+            @Override
+            public void providerDeregistered(Provider provider) {
+                breakerOpenings.incrementAndGet();
+            }
+        });
+
+        ProviderMock provider = new ProviderMock(registry);
+        try {
+            registry.registerProvider(provider);
+
+            // Saturate the single worker and pile up requests behind it
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < 10; i++) {
+                provider.invokeProvider(() -> {
+                    release.await();
+                    return null;
+                });
+            }
+
+            // Probe is answered right away, regardless of the requests queue
+            assertEquals(ProviderStatus.BUSY, provider.invokeHealthCheck().get(50, TimeUnit.MILLISECONDS));
+
+            // Several check cycles later, the circuit breaker never opened
+            Thread.sleep(500);
+            assertEquals(0, breakerOpenings.get());
+            assertEquals(10, provider.getOutstandingRequests());
+
+            release.countDown();
+            provider.tearDownService();
+        } finally {
+            ConfigProvider.setConfig(previous);
+        }
+    }
+
+    @Test
+    void testHungHealthCheckDoesNotStallOthers() throws Exception {
+        RegistryConfig config = new RegistryConfig();
+        config.setMaxAllowedRegisteredProviders(2);
+        config.setHealthCheckThreads(1);
+        config.setHealthCheckFrequencyMillis(50);
+        config.setHealthCheckRequestTimeoutMillis(1000);
+
+        InMemoryProviderRegistry registry = new InMemoryProviderRegistry(config);
+        AtomicInteger interruptedChecks = new AtomicInteger();
+        ProviderMock hungProvider = new ProviderMock(registry) {
+            @Override
+            public ProviderStatus check() {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interruptedChecks.incrementAndGet();
+                }
+                return ProviderStatus.OK;
+            }
+        };
+        ProviderMock failingProvider = new ProviderMock(registry);
+        registry.registerProvider(hungProvider);
+        registry.registerProvider(failingProvider);
+        failingProvider.setStatus(ProviderStatus.OUT_OF_SERVICE);
+
+        // The single check thread is not held by the hung check, the failing provider is evicted right away
+        assertTimeout(Duration.ofMillis(500), () -> {
+            while (registry.getAvailableServices().contains(failingProvider)) {
+                Thread.sleep(10);
+            }
+        });
+        assertTrue(registry.getAvailableServices().contains(hungProvider));
+
+        // The hung check times out: it is interrupted, the circuit opens and the provider keeps being checked
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (interruptedChecks.get() < 2) {
+                Thread.sleep(10);
+            }
+        });
+        assertFalse(registry.getAvailableServices().contains(hungProvider));
+        assertEquals(CircuitBreakerState.OPEN, registry.getCircuitBreakerStates().get(hungProvider));
+    }
+
+    @Test
+    void testCircuitBreakerOnRequestsFailures() throws Exception {
+        RegistryConfig config = new RegistryConfig();
+        config.setMaxAllowedRegisteredProviders(1);
+        config.setHealthCheckFrequencyMillis(50);
+        config.setHealthCheckRequestTimeoutMillis(100);
+        config.getCircuitBreaker().setSlidingWindowSize(10);
+        config.getCircuitBreaker().setMinimumNumberOfCalls(5);
+        config.getCircuitBreaker().setPermittedCallsInHalfOpenState(2);
+
+        InMemoryProviderRegistry registry = new InMemoryProviderRegistry(config);
+        ProviderMock provider = new ProviderMock(registry);
+        registry.registerProvider(provider);
+
+        // Failing requests open the circuit although health checks are fine
+        for (int i = 0; i < 5; i++) {
+            Future failing = provider.invokeProvider(() -> {
+                throw new IllegalStateException("provider failure");
+            });
+            assertThrows(ExecutionException.class, failing::get);
+        }
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (registry.getAvailableServices().size() > 0) {
+                Thread.sleep(10);
+            }
+        });
+        assertThrows(RejectedExecutionException.class, () -> provider.invokeProvider(() -> null));
+
+        // Successful health checks half open the circuit: provider is back, with limited trial requests
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (registry.getAvailableServices().size() < 1) {
+                Thread.sleep(10);
+            }
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        Future trial1 = provider.invokeProvider(() -> release.await(5, TimeUnit.SECONDS));
+        Future trial2 = provider.invokeProvider(() -> release.await(5, TimeUnit.SECONDS));
+        assertThrows(RejectedExecutionException.class, () -> provider.invokeProvider(() -> null));
+
+        // Successful trial requests close the circuit
+        release.countDown();
+        trial1.get();
+        trial2.get();
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (true) {
+                try {
+                    provider.invokeProvider(() -> null).get();
+                    return;
+                } catch (RejectedExecutionException ree) {
+                    Thread.sleep(10);
+                }
+            }
+        });
+        assertEquals(1, registry.getAvailableServices().size());
+    }
+
+    @Test
+    void testCircuitBreakerOnSlowCalls() throws Exception {
+        RegistryConfig config = new RegistryConfig();
+        config.setMaxAllowedRegisteredProviders(1);
+        config.setHealthCheckFrequencyMillis(50);
+        config.setHealthCheckRequestTimeoutMillis(100);
+        config.getCircuitBreaker().setSlidingWindowSize(10);
+        config.getCircuitBreaker().setMinimumNumberOfCalls(5);
+        config.getCircuitBreaker().setSlowCallDurationMillis(100);
+        config.getCircuitBreaker().setSlowCallRateThreshold(50);
+
+        InMemoryProviderRegistry registry = new InMemoryProviderRegistry(config);
+        AtomicInteger breakerOpenings = new AtomicInteger();
+        registry.addRegistryListener(new ProviderRegistryListener() {
+            @Override
+            public void providerRegistered(Provider provider) {
+            }
+
+            @Override
+            public void providerDeregistered(Provider provider) {
+                breakerOpenings.incrementAndGet();
+            }
+        });
+        ProviderMock provider = new ProviderMock(registry);
+        registry.registerProvider(provider);
+
+        // Fast requests queued behind each other: most of them wait over the slow call duration, but run fast
+        int workers = provider.getCapacity();
+        List<Future> queued = new ArrayList<>();
+        for (int i = 0; i < workers * 10; i++) {
+            queued.add(provider.invokeProvider(() -> {
+                Thread.sleep(20);
+                return null;
+            }));
+        }
+        for (Future request : queued) {
+            request.get();
+        }
+        assertEquals(0, breakerOpenings.get());
+        assertEquals(CircuitBreakerState.CLOSED, registry.getCircuitBreakerStates().get(provider));
+
+        // Slow requests open the circuit although health checks are fine
+        List<Future> slow = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            slow.add(provider.invokeProvider(() -> {
+                Thread.sleep(150);
+                return null;
+            }));
+        }
+        for (Future request : slow) {
+            request.get();
+        }
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            while (breakerOpenings.get() < 1) {
+                Thread.sleep(10);
+            }
+        });
+        provider.tearDownService();
+    }
+
+    @Test
+    void testCircuitBreakerHalfOpenPermits() throws Exception {
+        RegistryConfig config = new RegistryConfig();
+        config.setMaxAllowedRegisteredProviders(1);
+        config.setHealthCheckFrequencyMillis(60000);
+        config.setHealthCheckRequestTimeoutMillis(100);
+        config.getCircuitBreaker().setPermittedCallsInHalfOpenState(2);
+
+        InMemoryProviderRegistry registry = new InMemoryProviderRegistry(config);
+        ProviderMock provider = new ProviderMock(registry);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(registry, provider, config.getCircuitBreaker());
+        long admittedWhileClosed = circuitBreaker.tryAcquirePermission();
+        circuitBreaker.open("test");
+        assertEquals(RequestGuard.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+        circuitBreaker.halfOpen();
+
+        // A trial permit given back, e.g. by a request rejected before running, can be taken again
+        long trial1 = circuitBreaker.tryAcquirePermission();
+        long trial2 = circuitBreaker.tryAcquirePermission();
+        assertNotEquals(RequestGuard.NOT_PERMITTED, trial1);
+        assertNotEquals(RequestGuard.NOT_PERMITTED, trial2);
+        assertEquals(RequestGuard.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+        circuitBreaker.releasePermission(trial2);
+        trial2 = circuitBreaker.tryAcquirePermission();
+        assertNotEquals(RequestGuard.NOT_PERMITTED, trial2);
+
+        // A request admitted before the circuit opened is not a trial request
+        circuitBreaker.requestCompleted(admittedWhileClosed, 0L, true);
+        circuitBreaker.requestCompleted(admittedWhileClosed, 0L, true);
+        assertEquals(CircuitBreakerState.HALF_OPEN, circuitBreaker.getState());
 
+        circuitBreaker.requestCompleted(trial1, 0L, false);
+        circuitBreaker.requestCompleted(trial2, 0L, false);
+        assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+        provider.tearDownService();
     }
 }